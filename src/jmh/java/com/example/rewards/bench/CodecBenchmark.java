@@ -0,0 +1,127 @@
+package com.example.rewards.bench;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.example.rewards.repo.ProjectCodec;
+import com.example.rewards.repo.RewardCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one page of a list endpoint from the BSON the server sends: the driver's
+ * {@code DocumentCodec} followed by {@code MappingMongoConverter.read}, which is what
+ * {@code ReactiveMongoTemplate.find} does, against {@link RewardCodec} and
+ * {@link ProjectCodec} decoding straight into entities, as the repositories' list methods do.
+ *
+ * The documents are written by the converter, so they carry {@code _class} like the stored
+ * ones. Throughput is in pages per second; compare {@code gc.alloc.rate.norm} for the bytes
+ * allocated per page.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+  private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+  @Param({"100"})
+  private int pageSize;
+
+  private MappingMongoConverter converter;
+  private final DocumentCodec documentCodec = new DocumentCodec();
+  private final RewardCodec rewardCodec = new RewardCodec();
+  private final ProjectCodec projectCodec = new ProjectCodec();
+  private ByteBuffer[] rewards;
+  private ByteBuffer[] projects;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    MongoMappingContext context = new MongoMappingContext();
+    context.afterPropertiesSet();
+    converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+    converter.afterPropertiesSet();
+
+    String[] statuses = {"Running", "Ended", "Pending"};
+    rewards = new ByteBuffer[pageSize];
+    projects = new ByteBuffer[pageSize];
+    for (int i = 0; i < pageSize; i++) {
+      Reward reward = new Reward(new ObjectId().toHexString(), "user-" + (i % 10), i * 10, "Reward " + i);
+      reward.setVersion((long) i % 5);
+      rewards[i] = toBson(reward);
+      Project project = new Project("Project " + i, statuses[i % statuses.length], "Web App", i % 101);
+      project.setId(new ObjectId().toHexString());
+      project.setVersion((long) i % 5);
+      projects[i] = toBson(project);
+    }
+  }
+
+  @Benchmark
+  public void rewardsWithConverter(Blackhole blackhole) {
+    readWithConverter(rewards, Reward.class, blackhole);
+  }
+
+  @Benchmark
+  public void rewardsWithCodec(Blackhole blackhole) {
+    readWithCodec(rewards, rewardCodec, blackhole);
+  }
+
+  @Benchmark
+  public void projectsWithConverter(Blackhole blackhole) {
+    readWithConverter(projects, Project.class, blackhole);
+  }
+
+  @Benchmark
+  public void projectsWithCodec(Blackhole blackhole) {
+    readWithCodec(projects, projectCodec, blackhole);
+  }
+
+  private void readWithConverter(ByteBuffer[] page, Class<?> type, Blackhole blackhole) {
+    for (ByteBuffer bson : page) {
+      try (BsonBinaryReader reader = new BsonBinaryReader(bson.duplicate())) {
+        Document document = documentCodec.decode(reader, DECODER_CONTEXT);
+        blackhole.consume(converter.read(type, document));
+      }
+    }
+  }
+
+  private static void readWithCodec(ByteBuffer[] page, Codec<?> codec, Blackhole blackhole) {
+    for (ByteBuffer bson : page) {
+      try (BsonBinaryReader reader = new BsonBinaryReader(bson.duplicate())) {
+        blackhole.consume(codec.decode(reader, DECODER_CONTEXT));
+      }
+    }
+  }
+
+  private ByteBuffer toBson(Object entity) {
+    Document document = new Document();
+    converter.write(entity, document);
+    return new RawBsonDocument(document, documentCodec).getByteBuffer().asNIO();
+  }
+}
@@ -0,0 +1,260 @@
+package com.example.rewards.bench;
+
+import com.example.rewards.api.BufferingCborDecoder;
+import com.example.rewards.api.BufferingCborEncoder;
+import com.example.rewards.api.EntityJsonEncoder;
+import com.example.rewards.api.EntityProtobufDecoder;
+import com.example.rewards.api.EntityProtobufEncoder;
+import com.example.rewards.api.GlobalErrorHandler;
+import com.example.rewards.api.ProjectHandler;
+import com.example.rewards.api.ProjectRouter;
+import com.example.rewards.api.RewardHandler;
+import com.example.rewards.api.RewardRouter;
+import com.example.rewards.api.RouteMetrics;
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.example.rewards.repo.ProjectRepository;
+import com.example.rewards.repo.RewardRepository;
+import com.example.rewards.service.EntityCache;
+import com.example.rewards.service.ProjectService;
+import com.example.rewards.service.RewardService;
+import com.example.rewards.service.RewardWriteBuffer;
+import com.example.rewards.service.UserBalanceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the full WebFlux request path for the reward and project handlers: routing,
+ * JSON decoding, bean validation, the service call against in-memory repositories, and JSON
+ * encoding of the response. Caches are disabled so every read reaches the repository.
+ * Every benchmark runs once with {@link EntityJsonEncoder} and once with Jackson alone;
+ * {@code getRewardsAsCbor} and {@code getRewardsAsProtobuf} read the same page as
+ * {@code getRewards} in the other representations.
+ *
+ * Run with the {@code benchmarks} Maven profile; the default arguments add the GC profiler,
+ * which reports the allocation rate per operation ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandlerBenchmark {
+
+  private static final int USERS = 100;
+  private static final int REWARDS_PER_USER = 10;
+
+  private static final String REWARD_JSON = "{\"userId\":\"user-1\",\"points\":150,\"description\":\"Completed tutorial\"}";
+  private static final String PROJECT_JSON = "{\"name\":\"Project Omega\",\"status\":\"Running\",\"type\":\"Web App\",\"progress\":40}";
+
+  private static final String ENTITY_ENCODER = "entity";
+  private static final MediaType PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+  /**
+   * {@code entity} registers {@link EntityJsonEncoder} as {@code WebConfig} does; {@code jackson}
+   * leaves every response to the default Jackson encoder.
+   */
+  @Param({"entity", "jackson"})
+  private String jsonEncoder;
+
+  private InMemoryRepository<Reward> rewards;
+  private InMemoryRepository<Project> projects;
+  private HttpHandler httpHandler;
+  private String rewardId;
+  private String projectId;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    rewards = new InMemoryRepository<>(Reward::getId, Reward::setId)
+      .query("findByUserId", (entities, args) -> Flux.fromIterable(entities.values())
+        .filter(reward -> reward.getUserId().equals(args[0])))
+      .query("findAllByOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.values())
+        .take(((Limit) args[0]).max()));
+    projects = new InMemoryRepository<>(Project::getId, Project::setId);
+    InMemoryMongoTemplate template = new InMemoryMongoTemplate()
+      .store(Reward.class, rewards)
+      .store(Project.class, projects);
+
+    var registry = new SimpleMeterRegistry();
+    var balances = new UserBalanceService(template, 500, 4);
+    var writeBuffer = new RewardWriteBuffer(template, balances, registry,
+      false, 100, Duration.ofMillis(5), 10_000, 2, Duration.ofSeconds(10));
+    var rewardService = new RewardService(rewards.as(RewardRepository.class), template, balances, writeBuffer,
+      new EntityCache<>("rewards", 0, Duration.ZERO, registry), 500, 2);
+    var projectService = new ProjectService(projects.as(ProjectRepository.class), template,
+      new EntityCache<>("projects", 0, Duration.ZERO, registry), Duration.ZERO, Duration.ZERO);
+    var validator = Validation.buildDefaultValidatorFactory().getValidator();
+    var routeMetrics = new RouteMetrics(registry);
+
+    httpHandler = RouterFunctions.toHttpHandler(
+      new RewardRouter().routes(new RewardHandler(rewardService, validator), routeMetrics)
+        .and(new ProjectRouter().projectRoutes(new ProjectHandler(projectService), routeMetrics)),
+      HandlerStrategies.builder()
+        .codecs(codecs -> {
+          if (ENTITY_ENCODER.equals(jsonEncoder)) {
+            codecs.customCodecs().register(new EntityJsonEncoder());
+          }
+          codecs.customCodecs().register(new EntityProtobufEncoder());
+          codecs.customCodecs().register(new EntityProtobufDecoder());
+          codecs.customCodecs().register(new BufferingCborEncoder());
+          codecs.customCodecs().register(new BufferingCborDecoder());
+        })
+        .exceptionHandler(new GlobalErrorHandler())
+        .build());
+  }
+
+  /**
+   * Starts every iteration from the same data, so created documents do not pile up.
+   */
+  @Setup(Level.Iteration)
+  public void seed() {
+    rewards.clear();
+    projects.clear();
+    for (int i = 0; i < USERS * REWARDS_PER_USER; i++) {
+      Reward reward = new Reward(null, "user-" + (i % USERS), i, "reward " + i);
+      reward.setVersion(0L);
+      rewards.as(RewardRepository.class).save(reward).block();
+      rewardId = reward.getId();
+      Project project = new Project("Project " + i, "Running", "Web App", i % 101);
+      project.setVersion(0L);
+      projects.as(ProjectRepository.class).save(project).block();
+      projectId = project.getId();
+    }
+    expectOk(getReward());
+    expectOk(createReward());
+    expectOk(updateReward());
+    expectOk(getRewards());
+    expectOk(getRewardsAsCbor());
+    expectOk(getRewardsAsProtobuf());
+    expectOk(getRewardsByUser());
+    expectOk(getProject());
+    expectOk(createProject());
+    expectOk(updateProject());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    rewards.clear();
+    projects.clear();
+  }
+
+  @Benchmark
+  public MockServerHttpResponse getReward() {
+    return exchange(MockServerHttpRequest.get("/api/rewards/{id}", rewardId)
+      .accept(MediaType.APPLICATION_JSON)
+      .build());
+  }
+
+  /**
+   * The first page of {@code GET /api/rewards}: 100 rewards.
+   */
+  @Benchmark
+  public MockServerHttpResponse getRewards() {
+    return exchange(MockServerHttpRequest.get("/api/rewards")
+      .accept(MediaType.APPLICATION_JSON)
+      .build());
+  }
+
+  @Benchmark
+  public MockServerHttpResponse getRewardsAsCbor() {
+    return exchange(MockServerHttpRequest.get("/api/rewards")
+      .accept(MediaType.APPLICATION_CBOR)
+      .build());
+  }
+
+  @Benchmark
+  public MockServerHttpResponse getRewardsAsProtobuf() {
+    return exchange(MockServerHttpRequest.get("/api/rewards")
+      .accept(PROTOBUF)
+      .build());
+  }
+
+  @Benchmark
+  public MockServerHttpResponse getRewardsByUser() {
+    return exchange(MockServerHttpRequest.get("/api/rewards/user/user-1")
+      .accept(MediaType.APPLICATION_JSON)
+      .build());
+  }
+
+  @Benchmark
+  public MockServerHttpResponse createReward() {
+    return exchange(MockServerHttpRequest.post("/api/rewards")
+      .contentType(MediaType.APPLICATION_JSON)
+      .accept(MediaType.APPLICATION_JSON)
+      .body(REWARD_JSON));
+  }
+
+  @Benchmark
+  public MockServerHttpResponse updateReward() {
+    return exchange(MockServerHttpRequest.put("/api/rewards/{id}", rewardId)
+      .contentType(MediaType.APPLICATION_JSON)
+      .accept(MediaType.APPLICATION_JSON)
+      .body(REWARD_JSON));
+  }
+
+  @Benchmark
+  public MockServerHttpResponse getProject() {
+    return exchange(MockServerHttpRequest.get("/api/projects/{id}", projectId)
+      .accept(MediaType.APPLICATION_JSON)
+      .build());
+  }
+
+  @Benchmark
+  public MockServerHttpResponse createProject() {
+    return exchange(MockServerHttpRequest.post("/api/projects")
+      .contentType(MediaType.APPLICATION_JSON)
+      .accept(MediaType.APPLICATION_JSON)
+      .body(PROJECT_JSON));
+  }
+
+  @Benchmark
+  public MockServerHttpResponse updateProject() {
+    return exchange(MockServerHttpRequest.put("/api/projects/{id}", projectId)
+      .contentType(MediaType.APPLICATION_JSON)
+      .accept(MediaType.APPLICATION_JSON)
+      .body(PROJECT_JSON));
+  }
+
+  /**
+   * Runs the request through the handler chain. The mock response subscribes to the body,
+   * so the JSON encoding happens before this returns.
+   */
+  private MockServerHttpResponse exchange(MockServerHttpRequest request) {
+    MockServerHttpResponse response = new MockServerHttpResponse();
+    httpHandler.handle(request, response).block();
+    return response;
+  }
+
+  private static void expectOk(MockServerHttpResponse response) {
+    if (response.getStatusCode() != null && response.getStatusCode() != HttpStatus.OK) {
+      throw new IllegalStateException("Benchmark request failed with " + response.getStatusCode()
+        + ": " + response.getBodyAsString().block());
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.rewards.bench;
+
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the template operations on the benchmarked write paths. Balance upserts are
+ * acknowledged without doing anything, {@code findAndModify} returns the entity stored in
+ * the matching {@link InMemoryRepository} unchanged and {@code findAndRemove} removes it;
+ * the point is to exercise the handler and service code around the call, not to emulate
+ * MongoDB's update semantics.
+ *
+ * The underlying client is never used, so no server has to be running.
+ */
+final class InMemoryMongoTemplate extends ReactiveMongoTemplate {
+
+  private static final UpdateResult UPSERTED = UpdateResult.acknowledged(1, 1L, null);
+
+  private final Map<Class<?>, InMemoryRepository<?>> stores = new HashMap<>();
+
+  InMemoryMongoTemplate() {
+    super(MongoClients.create("mongodb://localhost:27017/?serverSelectionTimeoutMS=1"), "benchmarks");
+  }
+
+  <T> InMemoryMongoTemplate store(Class<T> entityClass, InMemoryRepository<T> repository) {
+    stores.put(entityClass, repository);
+    return this;
+  }
+
+  @Override
+  public Mono<UpdateResult> upsert(Query query, UpdateDefinition update, Class<?> entityClass) {
+    return Mono.just(UPSERTED);
+  }
+
+  @Override
+  public <T> Mono<T> findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options, Class<T> entityClass) {
+    InMemoryRepository<?> store = stores.get(entityClass);
+    Object id = query.getQueryObject().get("_id");
+    return store == null || id == null ? Mono.empty() : Mono.justOrEmpty(entityClass.cast(store.get(id.toString())));
+  }
+
+  @Override
+  public <T> Mono<T> findAndRemove(Query query, Class<T> entityClass) {
+    InMemoryRepository<?> store = stores.get(entityClass);
+    Object id = query.getQueryObject().get("_id");
+    return store == null || id == null ? Mono.empty() : Mono.justOrEmpty(entityClass.cast(store.remove(id.toString())));
+  }
+
+  @Override
+  public Mono<Boolean> exists(Query query, Class<?> entityClass) {
+    return Mono.just(true);
+  }
+}
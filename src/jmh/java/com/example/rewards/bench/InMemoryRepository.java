@@ -0,0 +1,85 @@
+package com.example.rewards.bench;
+
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Map-backed stand-in for a reactive Spring Data repository, so benchmarks measure the
+ * request path without a database. Implements the CRUD methods the handlers use
+ * ({@code save}, {@code findById}, {@code findAll}, {@code deleteById}) plus any derived
+ * query registered with {@link #query}; every other method throws. Entities are kept in id
+ * order, which for generated ObjectIds is insertion order, like the {@code _id} index.
+ */
+final class InMemoryRepository<T> implements InvocationHandler {
+
+  private final NavigableMap<String, T> entities = new ConcurrentSkipListMap<>();
+  private final Map<String, BiFunction<NavigableMap<String, T>, Object[], Object>> queries = new ConcurrentHashMap<>();
+  private final Function<T, String> idOf;
+  private final BiConsumer<T, String> setId;
+
+  InMemoryRepository(Function<T, String> idOf, BiConsumer<T, String> setId) {
+    this.idOf = idOf;
+    this.setId = setId;
+  }
+
+  InMemoryRepository<T> query(String method, BiFunction<NavigableMap<String, T>, Object[], Object> implementation) {
+    queries.put(method, implementation);
+    return this;
+  }
+
+  <R> R as(Class<R> repositoryType) {
+    return repositoryType.cast(Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[] {repositoryType}, this));
+  }
+
+  T get(String id) {
+    return entities.get(id);
+  }
+
+  T remove(String id) {
+    return entities.remove(id);
+  }
+
+  void clear() {
+    entities.clear();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    String name = method.getName();
+    BiFunction<NavigableMap<String, T>, Object[], Object> query = queries.get(name);
+    if (query != null) {
+      return query.apply(entities, args);
+    }
+    return switch (name) {
+      case "save" -> {
+        T entity = (T) args[0];
+        if (idOf.apply(entity) == null) {
+          setId.accept(entity, new ObjectId().toHexString());
+        }
+        entities.put(idOf.apply(entity), entity);
+        yield Mono.just(entity);
+      }
+      case "findById" -> Mono.justOrEmpty(entities.get((String) args[0]));
+      case "findAll" -> Flux.fromIterable(entities.values());
+      case "deleteById" -> Mono.fromRunnable(() -> entities.remove((String) args[0]));
+      case "count" -> Mono.just((long) entities.size());
+      case "toString" -> "InMemoryRepository" + entities.keySet();
+      case "hashCode" -> System.identityHashCode(proxy);
+      case "equals" -> proxy == args[0];
+      default -> throw new UnsupportedOperationException(name + " is not supported by the in-memory repository");
+    };
+  }
+}
@@ -0,0 +1,473 @@
+package com.example.rewards.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the reward and project endpoints.
+ *
+ * Requests are scheduled at a fixed rate regardless of how fast responses come back, and
+ * each latency is measured from the time the request was <em>scheduled</em> to go out, not
+ * from when it was actually sent. A server that stalls therefore shows up in the tail
+ * percentiles instead of silently slowing the generator down (coordinated omission).
+ *
+ * By default the application is started in-process on top of {@link LoadTestApplication};
+ * {@code target=} points the generator at a running deployment instead. Arguments are
+ * {@code key=value} pairs:
+ * <pre>
+ *   rps=500 duration=30s warmup=10s connections=256 output=target/load-result.json
+ *   mix=reward-get:40,reward-list:10,reward-create:15,reward-update:10,reward-delete:5,...
+ *   target=http://host:8080 protocol=h2c
+ * </pre>
+ * With {@code protocol=h2c} requests are multiplexed as HTTP/2 streams over (at most)
+ * {@code connections} cleartext connections instead of one request per HTTP/1.1 connection.
+ * The JSON report has latency percentiles and throughput per operation and overall, plus
+ * the compressed HdrHistogram of each, so runs of different builds can be compared. The
+ * slowest request of each operation is listed with its {@code Server-Timing} header.
+ */
+public final class LoadGenerator {
+
+  private static final String DEFAULT_MIX = "reward-get:40,reward-list:10,reward-by-user:5,reward-create:10,"
+    + "reward-update:10,reward-delete:5,project-get:10,project-list:5,project-update:5";
+  private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+  private static final String SERVER_TIMING = "Server-Timing";
+
+  private final Config config;
+  private final HttpClient client;
+  private final List<String> rewardIds;
+  private final List<String> projectIds;
+  private final Queue<String> createdRewards = new ConcurrentLinkedQueue<>();
+  private final Queue<String> createdProjects = new ConcurrentLinkedQueue<>();
+  private final Map<Operation, Stats> stats = new LinkedHashMap<>();
+  private final AtomicLong inFlight = new AtomicLong();
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private LoadGenerator(Config config, HttpClient client, List<String> rewardIds, List<String> projectIds) {
+    this.config = config;
+    this.client = client;
+    this.rewardIds = rewardIds;
+    this.projectIds = projectIds;
+    config.mix().keySet().forEach(operation -> stats.put(operation, new Stats()));
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config config = Config.parse(args);
+    ConfigurableApplicationContext application = null;
+    String baseUrl = config.target();
+    if (baseUrl == null) {
+      application = LoadTestApplication.start(0);
+      baseUrl = "http://localhost:" + LoadTestApplication.port(application);
+    }
+    ConnectionProvider connections = ConnectionProvider.builder("load-generator")
+      .maxConnections(config.connections())
+      .pendingAcquireMaxCount(-1)
+      .build();
+    try {
+      HttpClient client = HttpClient.create(connections)
+        .protocol(config.protocol())
+        .baseUrl(baseUrl)
+        .headers(headers -> headers
+          .set(HttpHeaderNames.ACCEPT, HttpHeaderValues.APPLICATION_JSON)
+          .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON));
+      LoadGenerator generator = new LoadGenerator(config, client,
+        discover(client, "/api/rewards?limit=1000"), discover(client, "/api/projects?limit=1000"));
+      Map<String, Object> report = generator.run(baseUrl);
+      Path output = Path.of(config.output());
+      if (output.getParent() != null) {
+        Files.createDirectories(output.getParent());
+      }
+      generator.mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+      System.out.println(generator.summary(report));
+      System.out.println("Report written to " + output.toAbsolutePath());
+    } finally {
+      connections.disposeLater().block();
+      if (application != null) {
+        application.close();
+      }
+    }
+  }
+
+  /**
+   * Ids of existing documents to read and update, taken from the first page of a list endpoint.
+   */
+  private static List<String> discover(HttpClient client, String uri) {
+    String body = client.get().uri(uri).responseContent().aggregate().asString().block();
+    List<String> ids = new ArrayList<>();
+    try {
+      new ObjectMapper().readTree(body).forEach(node -> ids.add(node.get("id").asText()));
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not read ids from " + uri, e);
+    }
+    if (ids.isEmpty()) {
+      throw new IllegalStateException("No documents returned by " + uri + "; seed the target first");
+    }
+    return ids;
+  }
+
+  private Map<String, Object> run(String baseUrl) {
+    Operation[] schedule = config.schedule();
+    long interval = TimeUnit.SECONDS.toNanos(1) / config.rps();
+    long start = System.nanoTime();
+    long measureFrom = start + config.warmup().toNanos();
+    long end = measureFrom + config.duration().toNanos();
+    Instant startedAt = Instant.now();
+
+    for (long i = 0; ; i++) {
+      long intended = start + i * interval;
+      if (intended >= end) {
+        break;
+      }
+      long wait;
+      while ((wait = intended - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      send(schedule[(int) (i % schedule.length)], intended, intended >= measureFrom);
+    }
+    long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+    while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    return report(baseUrl, startedAt, inFlight.get());
+  }
+
+  /**
+   * Fires one request without waiting for it; the response is recorded when it arrives.
+   */
+  private void send(Operation operation, long intended, boolean measured) {
+    Request request = request(operation);
+    Stats operationStats = stats.get(operation);
+    inFlight.incrementAndGet();
+    client.request(request.method())
+      .uri(request.uri())
+      .send(request.body() == null ? Mono.empty() : ByteBufFlux.fromString(Mono.just(request.body())))
+      .responseSingle((response, body) -> body.asString()
+        .defaultIfEmpty("")
+        .map(content -> {
+          onResponse(operation, response.status().code(), content);
+          return response;
+        }))
+      .subscribe(
+        response -> {
+          inFlight.decrementAndGet();
+          if (measured) {
+            operationStats.record(intended, response.status().code() < 400, request.uri(),
+              response.responseHeaders().get(SERVER_TIMING));
+          }
+        },
+        error -> {
+          inFlight.decrementAndGet();
+          if (measured) {
+            operationStats.record(intended, false, request.uri(), null);
+          }
+        });
+  }
+
+  private Request request(Operation operation) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String rewardId = rewardIds.get(random.nextInt(rewardIds.size()));
+    String projectId = projectIds.get(random.nextInt(projectIds.size()));
+    String reward = "{\"userId\":\"user-" + random.nextInt(LoadTestApplication.USERS)
+      + "\",\"points\":" + random.nextInt(1, 500) + ",\"description\":\"Load test reward\"}";
+    String project = "{\"name\":\"Load test project\",\"status\":\"Running\",\"type\":\"Web App\",\"progress\":"
+      + random.nextInt(101) + "}";
+    return switch (operation) {
+      case REWARD_GET -> new Request(HttpMethod.GET, "/api/rewards/" + rewardId, null);
+      case REWARD_LIST -> new Request(HttpMethod.GET, "/api/rewards?limit=50", null);
+      case REWARD_BY_USER -> new Request(HttpMethod.GET,
+        "/api/rewards/user/user-" + random.nextInt(LoadTestApplication.USERS) + "?limit=20", null);
+      case REWARD_CREATE -> new Request(HttpMethod.POST, "/api/rewards", reward);
+      case REWARD_UPDATE -> new Request(HttpMethod.PUT, "/api/rewards/" + rewardId, reward);
+      case REWARD_DELETE -> deleteOrCreate(createdRewards, "/api/rewards", reward);
+      case PROJECT_GET -> new Request(HttpMethod.GET, "/api/projects/" + projectId, null);
+      case PROJECT_LIST -> new Request(HttpMethod.GET, "/api/projects?limit=50", null);
+      case PROJECT_CREATE -> new Request(HttpMethod.POST, "/api/projects", project);
+      case PROJECT_UPDATE -> new Request(HttpMethod.PUT, "/api/projects/" + projectId, project);
+      case PROJECT_DELETE -> deleteOrCreate(createdProjects, "/api/projects", project);
+    };
+  }
+
+  /**
+   * Deletes only documents created during the run, so the seeded ones stay readable. Until
+   * a create has completed there is nothing to delete, and the slot creates one instead.
+   */
+  private static Request deleteOrCreate(Queue<String> created, String collection, String body) {
+    String id = created.poll();
+    return id == null
+      ? new Request(HttpMethod.POST, collection, body)
+      : new Request(HttpMethod.DELETE, collection + "/" + id, null);
+  }
+
+  private void onResponse(Operation operation, int status, String body) {
+    Queue<String> created = switch (operation) {
+      case REWARD_CREATE, REWARD_DELETE -> createdRewards;
+      case PROJECT_CREATE, PROJECT_DELETE -> createdProjects;
+      default -> null;
+    };
+    if (created == null || status != 200 && status != 201 || body.isEmpty()) {
+      return;
+    }
+    try {
+      JsonNode id = mapper.readTree(body).get("id");
+      if (id != null) {
+        created.add(id.asText());
+      }
+    } catch (Exception ignored) {
+      // not a create response
+    }
+  }
+
+  private Map<String, Object> report(String baseUrl, Instant startedAt, long unfinished) {
+    double seconds = config.duration().toNanos() / 1e9;
+    Histogram overall = new Histogram(MAX_LATENCY_MICROS, 3);
+    long errors = 0;
+    Map<String, Object> operations = new LinkedHashMap<>();
+    for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+      Histogram histogram = entry.getValue().recorder.getIntervalHistogram();
+      long operationErrors = entry.getValue().errors.sum();
+      overall.add(histogram);
+      errors += operationErrors;
+      Map<String, Object> operation = describe(histogram, operationErrors, seconds);
+      entry.getValue().slowest().ifPresent(slowest -> operation.put("slowest", slowest));
+      operations.put(entry.getKey().key, operation);
+    }
+
+    Map<String, Object> configuration = new LinkedHashMap<>();
+    configuration.put("target", baseUrl);
+    configuration.put("inProcess", config.target() == null);
+    configuration.put("rps", config.rps());
+    configuration.put("durationSeconds", config.duration().toSeconds());
+    configuration.put("warmupSeconds", config.warmup().toSeconds());
+    configuration.put("connections", config.connections());
+    configuration.put("protocol", config.protocol() == HttpProtocol.H2C ? "h2c" : "http/1.1");
+    Map<String, Integer> mix = new LinkedHashMap<>();
+    config.mix().forEach((operation, weight) -> mix.put(operation.key, weight));
+    configuration.put("mix", mix);
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("startedAt", startedAt.toString());
+    report.put("javaVersion", Runtime.version().toString());
+    report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+    report.put("config", configuration);
+    report.put("unfinishedRequests", unfinished);
+    report.put("overall", describe(overall, errors, seconds));
+    report.put("operations", operations);
+    return report;
+  }
+
+  private static Map<String, Object> describe(Histogram histogram, long errors, double seconds) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("requests", histogram.getTotalCount());
+    result.put("errors", errors);
+    result.put("throughputPerSecond", round(histogram.getTotalCount() / seconds));
+    Map<String, Object> latency = new LinkedHashMap<>();
+    latency.put("p50", millis(histogram.getValueAtPercentile(50)));
+    latency.put("p90", millis(histogram.getValueAtPercentile(90)));
+    latency.put("p99", millis(histogram.getValueAtPercentile(99)));
+    latency.put("p99.9", millis(histogram.getValueAtPercentile(99.9)));
+    latency.put("max", millis(histogram.getMaxValue()));
+    latency.put("mean", round(histogram.getMean() / 1000));
+    result.put("latencyMillis", latency);
+    ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+    int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+    result.put("hdrHistogramMicros", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private String summary(Map<String, Object> report) {
+    StringBuilder out = new StringBuilder(String.format("%-16s %9s %7s %9s %9s %9s %9s %9s%n",
+      "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+    Map<String, Object> rows = new LinkedHashMap<>((Map<String, Object>) report.get("operations"));
+    rows.put("overall", report.get("overall"));
+    rows.forEach((name, value) -> {
+      Map<String, Object> row = (Map<String, Object>) value;
+      Map<String, Object> latency = (Map<String, Object>) row.get("latencyMillis");
+      out.append(String.format("%-16s %9d %7d %9.1f %9.3f %9.3f %9.3f %9.3f%n", name,
+        row.get("requests"), row.get("errors"), row.get("throughputPerSecond"),
+        latency.get("p50"), latency.get("p99"), latency.get("p99.9"), latency.get("max")));
+    });
+    return out.toString();
+  }
+
+  private static double millis(long micros) {
+    return round(micros / 1000.0);
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 1000) / 1000.0;
+  }
+
+  enum Operation {
+    REWARD_GET("reward-get"),
+    REWARD_LIST("reward-list"),
+    REWARD_BY_USER("reward-by-user"),
+    REWARD_CREATE("reward-create"),
+    REWARD_UPDATE("reward-update"),
+    REWARD_DELETE("reward-delete"),
+    PROJECT_GET("project-get"),
+    PROJECT_LIST("project-list"),
+    PROJECT_CREATE("project-create"),
+    PROJECT_UPDATE("project-update"),
+    PROJECT_DELETE("project-delete");
+
+    private final String key;
+
+    Operation(String key) {
+      this.key = key;
+    }
+
+    static Operation of(String key) {
+      for (Operation operation : values()) {
+        if (operation.key.equals(key)) {
+          return operation;
+        }
+      }
+      throw new IllegalArgumentException("Unknown operation: " + key);
+    }
+  }
+
+  private record Request(HttpMethod method, String uri, String body) {
+  }
+
+  private static final class Stats {
+
+    private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+    private long slowestMicros;
+    private String slowestUri;
+    private String slowestTiming;
+
+    void record(long intended, boolean ok, String uri, String serverTiming) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+      recorder.recordValue(Math.min(Math.max(micros, 1), MAX_LATENCY_MICROS));
+      if (!ok) {
+        errors.increment();
+      }
+      synchronized (this) {
+        if (micros > slowestMicros) {
+          slowestMicros = micros;
+          slowestUri = uri;
+          slowestTiming = serverTiming;
+        }
+      }
+    }
+
+    /**
+     * The slowest request with the server's own breakdown of it, when the target sends one.
+     */
+    synchronized Optional<Map<String, Object>> slowest() {
+      if (slowestUri == null) {
+        return Optional.empty();
+      }
+      Map<String, Object> slowest = new LinkedHashMap<>();
+      slowest.put("latencyMillis", millis(slowestMicros));
+      slowest.put("uri", slowestUri);
+      slowest.put("serverTiming", slowestTiming);
+      return Optional.of(slowest);
+    }
+  }
+
+  record Config(int rps, Duration duration, Duration warmup, int connections,
+                Map<Operation, Integer> mix, String output, String target, HttpProtocol protocol) {
+
+    static Config parse(String[] args) {
+      Map<String, String> values = new LinkedHashMap<>();
+      for (String arg : args) {
+        for (String pair : arg.trim().split("\\s+")) {
+          if (pair.isEmpty()) {
+            continue;
+          }
+          int separator = pair.indexOf('=');
+          if (separator < 1) {
+            throw new IllegalArgumentException("Expected key=value but got: " + pair);
+          }
+          values.put(pair.substring(0, separator), pair.substring(separator + 1));
+        }
+      }
+      Map<Operation, Integer> mix = new LinkedHashMap<>();
+      for (String entry : values.getOrDefault("mix", DEFAULT_MIX).split(",")) {
+        String[] parts = entry.split(":");
+        int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+        if (weight > 0) {
+          mix.put(Operation.of(parts[0]), weight);
+        }
+      }
+      if (mix.isEmpty()) {
+        throw new IllegalArgumentException("mix must contain at least one operation");
+      }
+      int rps = Integer.parseInt(values.getOrDefault("rps", "500"));
+      if (rps < 1) {
+        throw new IllegalArgumentException("rps must be positive");
+      }
+      HttpProtocol protocol = switch (values.getOrDefault("protocol", "http/1.1")) {
+        case "http/1.1" -> HttpProtocol.HTTP11;
+        case "h2c" -> HttpProtocol.H2C;
+        default -> throw new IllegalArgumentException("protocol must be http/1.1 or h2c");
+      };
+      return new Config(rps,
+        DurationStyle.detectAndParse(values.getOrDefault("duration", "30s")),
+        DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+        Integer.parseInt(values.getOrDefault("connections", "256")),
+        mix,
+        values.getOrDefault("output", "target/load-result.json"),
+        values.get("target"),
+        protocol);
+    }
+
+    /**
+     * The mix spread into a repeating sequence of operations, interleaved so that each one
+     * is sent at an even pace instead of in bursts. Weights are relative shares of traffic.
+     */
+    Operation[] schedule() {
+      int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+      Operation[] schedule = new Operation[total];
+      Map<Operation, Double> credit = new LinkedHashMap<>();
+      for (int slot = 0; slot < total; slot++) {
+        Operation next = null;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+          double value = credit.merge(entry.getKey(), (double) entry.getValue() / total, Double::sum);
+          if (next == null || value > credit.get(next)) {
+            next = entry.getKey();
+          }
+        }
+        credit.merge(next, -1.0, Double::sum);
+        schedule[slot] = next;
+      }
+      return schedule;
+    }
+  }
+}
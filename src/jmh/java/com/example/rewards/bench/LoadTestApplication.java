@@ -0,0 +1,143 @@
+package com.example.rewards.bench;
+
+import com.example.rewards.WebfluxMongodbRestApplication;
+import com.example.rewards.config.DataInitializer;
+import com.example.rewards.config.IndexVerifier;
+import com.example.rewards.config.MongoConnectionValidator;
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.example.rewards.repo.ProjectRepository;
+import com.example.rewards.repo.RewardRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+
+/**
+ * The real application (routers, handlers, services, caches, error handling, Netty) with
+ * MongoDB replaced by {@link InMemoryRepository} and {@link InMemoryMongoTemplate}, so the
+ * load generator measures this build's request path without a database in the loop.
+ *
+ * Everything under {@code com.example.rewards} is picked up as usual except the classes
+ * that talk to MongoDB on startup, and the Mongo auto-configurations are left out.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+  MongoAutoConfiguration.class,
+  MongoReactiveAutoConfiguration.class,
+  MongoDataAutoConfiguration.class,
+  MongoReactiveDataAutoConfiguration.class,
+  MongoRepositoriesAutoConfiguration.class,
+  MongoReactiveRepositoriesAutoConfiguration.class
+})
+@ComponentScan(basePackages = "com.example.rewards", excludeFilters = @ComponentScan.Filter(
+  type = FilterType.ASSIGNABLE_TYPE,
+  classes = {
+    WebfluxMongodbRestApplication.class,
+    DataInitializer.class,
+    MongoConnectionValidator.class,
+    IndexVerifier.class
+  }))
+class LoadTestApplication {
+
+  static final int USERS = 1_000;
+  static final int REWARDS_PER_USER = 10;
+  static final int PROJECTS = 1_000;
+
+  /**
+   * Starts the application on the given port (0 picks a free one) with the seeded data set.
+   * Configuration is read from the main artifact only; the test resources on the same
+   * classpath carry an {@code application.yml} of their own that would shadow it.
+   */
+  static ConfigurableApplicationContext start(int port) {
+    SpringApplication application = new SpringApplication(LoadTestApplication.class);
+    application.setDefaultProperties(Map.of(
+      "gcp.secretmanager.enabled", false,
+      "logging.level.org.mongodb.driver", "ERROR"));
+    String mainConfig = WebfluxMongodbRestApplication.class.getProtectionDomain().getCodeSource().getLocation().toString();
+    ConfigurableApplicationContext context = application.run(
+      "--spring.config.location=" + mainConfig,
+      "--spring.profiles.active=local",
+      "--server.port=" + port);
+    seed(context);
+    return context;
+  }
+
+  static int port(ConfigurableApplicationContext context) {
+    return ((WebServerApplicationContext) context).getWebServer().getPort();
+  }
+
+  @Bean
+  InMemoryRepository<Reward> rewardStore() {
+    return new InMemoryRepository<>(Reward::getId, Reward::setId)
+      .query("findByUserId", (entities, args) -> Flux.fromIterable(entities.values())
+        .filter(reward -> reward.getUserId().equals(args[0])))
+      .query("findAllByOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.values())
+        .take(((Limit) args[0]).max()))
+      .query("findByIdGreaterThanOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.tailMap((String) args[0], false).values())
+        .take(((Limit) args[1]).max()))
+      .query("findByUserIdOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.values())
+        .filter(reward -> reward.getUserId().equals(args[0]))
+        .take(((Limit) args[1]).max()))
+      .query("findByUserIdAndIdGreaterThanOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.tailMap((String) args[1], false).values())
+        .filter(reward -> reward.getUserId().equals(args[0]))
+        .take(((Limit) args[2]).max()));
+  }
+
+  @Bean
+  InMemoryRepository<Project> projectStore() {
+    return new InMemoryRepository<>(Project::getId, Project::setId)
+      .query("findAllByOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.values())
+        .take(((Limit) args[0]).max()))
+      .query("findByIdGreaterThanOrderByIdAsc", (entities, args) -> Flux.fromIterable(entities.tailMap((String) args[0], false).values())
+        .take(((Limit) args[1]).max()));
+  }
+
+  @Bean
+  RewardRepository rewardRepository(InMemoryRepository<Reward> rewardStore) {
+    return rewardStore.as(RewardRepository.class);
+  }
+
+  @Bean
+  ProjectRepository projectRepository(InMemoryRepository<Project> projectStore) {
+    return projectStore.as(ProjectRepository.class);
+  }
+
+  @Bean
+  ReactiveMongoTemplate reactiveMongoTemplate(InMemoryRepository<Reward> rewardStore,
+                                              InMemoryRepository<Project> projectStore) {
+    return new InMemoryMongoTemplate()
+      .store(Reward.class, rewardStore)
+      .store(Project.class, projectStore);
+  }
+
+  private static void seed(ConfigurableApplicationContext context) {
+    RewardRepository rewards = context.getBean(RewardRepository.class);
+    ProjectRepository projects = context.getBean(ProjectRepository.class);
+    for (int i = 0; i < USERS * REWARDS_PER_USER; i++) {
+      Reward reward = new Reward(null, "user-" + (i % USERS), i % 500, "reward " + i);
+      reward.setVersion(0L);
+      rewards.save(reward).block();
+    }
+    for (int i = 0; i < PROJECTS; i++) {
+      Project project = new Project("Project " + i, i % 2 == 0 ? "Running" : "Completed", "Web App", i % 101);
+      project.setVersion(0L);
+      projects.save(project).block();
+    }
+  }
+}
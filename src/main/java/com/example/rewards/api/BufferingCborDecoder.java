@@ -0,0 +1,26 @@
+package com.example.rewards.api;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jackson's CBOR decoder, which cannot read a stream of values. A stream is read from a body
+ * holding one CBOR array, once the whole body has arrived.
+ */
+public class BufferingCborDecoder extends Jackson2CborDecoder {
+
+  @Override
+  public Flux<Object> decode(Publisher<DataBuffer> input, ResolvableType elementType,
+                             MimeType mimeType, Map<String, Object> hints) {
+    ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+    return decodeToMono(input, listType, mimeType, hints)
+      .flatMapIterable(list -> (List<?>) list);
+  }
+}
@@ -0,0 +1,34 @@
+package com.example.rewards.api;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jackson's CBOR encoder, which only encodes single values and rejects every publisher,
+ * including the {@code Mono} of {@code bodyValue}. A single value is encoded as is; a stream
+ * is collected and written as one CBOR array.
+ */
+public class BufferingCborEncoder extends Jackson2CborEncoder {
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                 ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+    if (inputStream instanceof Mono<?> mono) {
+      return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+    }
+    ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+    return Flux.from(inputStream)
+      .collectList()
+      .map(list -> encodeValue(list, bufferFactory, listType, mimeType, hints))
+      .flux();
+  }
+}
@@ -0,0 +1,46 @@
+package com.example.rewards.api;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of {@link ResponseCompression} under {@code rewards.compression}; the filter itself is
+ * switched off with {@code rewards.compression.enabled=false}.
+ *
+ * @param minSize      bodies smaller than this are sent as they are
+ * @param encodings    content codings in the server's order of preference, used among those the
+ *                     client accepts with the same quality; {@code zstd} is skipped when its native
+ *                     library cannot be loaded
+ * @param mimeTypes    content types that are compressed
+ * @param cacheMaxSize bytes of precompressed bodies kept for routes with {@code cache: true},
+ *                     counting both the uncompressed and the compressed body; 0 disables the cache
+ * @param routes       overrides per route pattern, as declared in the routers (e.g.
+ *                     {@code "[/api/projects]"})
+ */
+@ConfigurationProperties("rewards.compression")
+public record CompressionProperties(
+  @DefaultValue("1KB") DataSize minSize,
+  @DefaultValue({"zstd", "gzip", "deflate"}) List<String> encodings,
+  @DefaultValue({"application/json", "application/cbor", "application/x-protobuf"}) List<String> mimeTypes,
+  @DefaultValue("4MB") DataSize cacheMaxSize,
+  Map<String, Route> routes) {
+
+  public CompressionProperties {
+    routes = routes == null ? Map.of() : Map.copyOf(routes);
+  }
+
+  /**
+   * The settings of one route; unset values fall back to the global ones.
+   *
+   * @param enabled whether responses of the route are compressed
+   * @param minSize the route's minimum body size
+   * @param cache   keep the compressed body of each URL and reuse it while the uncompressed body
+   *                is unchanged; for hot, rarely changing responses
+   */
+  public record Route(Boolean enabled, DataSize minSize, boolean cache) {
+  }
+}
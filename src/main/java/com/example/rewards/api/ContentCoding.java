@@ -0,0 +1,168 @@
+package com.example.rewards.api;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.util.Native;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The HTTP content codings {@link ResponseCompression} can apply, with their default levels.
+ */
+enum ContentCoding {
+
+  ZSTD("zstd") {
+    @Override
+    byte[] compress(byte[] body) {
+      return Zstd.compress(body, Zstd.defaultCompressionLevel());
+    }
+
+    @Override
+    boolean available() {
+      return ZstdLibrary.LOADED;
+    }
+  },
+  GZIP("gzip") {
+    @Override
+    byte[] compress(byte[] body) {
+      return deflate(body, GZIPOutputStream::new);
+    }
+  },
+  // "deflate" in HTTP is the zlib format, which DeflaterOutputStream writes by default
+  DEFLATE("deflate") {
+    @Override
+    byte[] compress(byte[] body) {
+      return deflate(body, DeflaterOutputStream::new);
+    }
+  };
+
+  private final String token;
+
+  ContentCoding(String token) {
+    this.token = token;
+  }
+
+  String token() {
+    return token;
+  }
+
+  abstract byte[] compress(byte[] body);
+
+  /**
+   * The entity tag of a body compressed with this coding: {@code "3"} becomes {@code "3-gzip"}.
+   */
+  String tag(String etag) {
+    return etag.substring(0, etag.length() - 1) + suffix() + "\"";
+  }
+
+  /**
+   * The opaque part of an entity tag ({@code 3-gzip}) without this coding's suffix.
+   */
+  String untag(String opaqueTag) {
+    return opaqueTag.endsWith(suffix()) ? opaqueTag.substring(0, opaqueTag.length() - suffix().length()) : opaqueTag;
+  }
+
+  private String suffix() {
+    return "-" + token;
+  }
+
+  boolean available() {
+    return true;
+  }
+
+  static ContentCoding of(String token) {
+    for (ContentCoding coding : values()) {
+      if (coding.token.equalsIgnoreCase(token.trim())) {
+        return coding;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported content coding: " + token);
+  }
+
+  /**
+   * The coding the client accepts with the highest quality, preferring the earlier of
+   * {@code offered} on ties; null when it accepts none of them.
+   *
+   * @param acceptEncoding the {@code Accept-Encoding} header values, possibly null
+   */
+  static ContentCoding negotiate(List<String> acceptEncoding, List<ContentCoding> offered) {
+    if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+      return null;
+    }
+    ContentCoding best = null;
+    double bestQuality = 0;
+    for (ContentCoding coding : offered) {
+      double quality = quality(acceptEncoding, coding.token);
+      if (quality > bestQuality) {
+        best = coding;
+        bestQuality = quality;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * The quality the header gives to {@code token}, or to {@code *} when it is not listed.
+   */
+  private static double quality(List<String> acceptEncoding, String token) {
+    double wildcard = 0;
+    for (String value : acceptEncoding) {
+      for (String element : value.split(",")) {
+        String[] parts = element.split(";");
+        String name = parts[0].trim().toLowerCase(Locale.ROOT);
+        double quality = 1;
+        for (int i = 1; i < parts.length; i++) {
+          String parameter = parts[i].trim();
+          if (parameter.startsWith("q=")) {
+            try {
+              quality = Double.parseDouble(parameter.substring(2));
+            } catch (NumberFormatException e) {
+              quality = 0;
+            }
+          }
+        }
+        if (name.equals(token)) {
+          return quality;
+        }
+        if (name.equals("*")) {
+          wildcard = quality;
+        }
+      }
+    }
+    return wildcard;
+  }
+
+  private static byte[] deflate(byte[] body, StreamFactory factory) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+    try (OutputStream out = factory.wrap(compressed)) {
+      out.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return compressed.toByteArray();
+  }
+
+  private interface StreamFactory {
+    OutputStream wrap(OutputStream out) throws IOException;
+  }
+
+  private static final class ZstdLibrary {
+
+    static final boolean LOADED = load();
+
+    private static boolean load() {
+      try {
+        Native.load();
+        return true;
+      } catch (LinkageError e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.example.rewards.api;
+
+import org.bson.types.ObjectId;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Keyset (cursor) pagination on {@code _id} for list endpoints.
+ *
+ * Reads {@code ?limit=} and {@code ?after=} from the request, fetches one extra
+ * element to find out whether another page exists, and returns the cursor of the
+ * next page in the {@code X-Next-Cursor} and {@code Link} headers. The body stays
+ * a plain array (or RewardList/ProjectList in protobuf) so existing clients keep working.
+ */
+final class CursorPage {
+
+  static final int DEFAULT_LIMIT = 100;
+  static final int MAX_LIMIT = 1000;
+  static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  private CursorPage() {
+  }
+
+  /**
+   * Runs {@code query} with the cursor and page size taken from the request.
+   *
+   * @param query receives the {@code after} cursor (may be null) and the number of elements to fetch
+   * @param cursorOf extracts the cursor value (the id) from an element
+   * @param elementType the class of the elements, so that the page is negotiated and encoded as a typed list
+   */
+  static <T> Mono<ServerResponse> respond(ServerRequest request,
+                                          BiFunction<String, Integer, Flux<T>> query,
+                                          Function<T, String> cursorOf,
+                                          Class<?> elementType) {
+    int limit;
+    String after;
+    try {
+      limit = limit(request);
+      after = after(request);
+    } catch (IllegalArgumentException e) {
+      return Mono.error(e);
+    }
+    return ServerTiming.time(ServerTiming.DB, query.apply(after, limit + 1))
+      .collectList()
+      .flatMap(items -> {
+        boolean hasMore = items.size() > limit;
+        List<T> page = hasMore ? items.subList(0, limit) : items;
+        ServerResponse.BodyBuilder builder = Representations.ok(request, elementType);
+        if (hasMore) {
+          String next = cursorOf.apply(page.get(page.size() - 1));
+          builder.header(NEXT_CURSOR_HEADER, next)
+            .header("Link", "<" + request.uriBuilder()
+              .replaceQueryParam("after", next)
+              .replaceQueryParam("limit", limit)
+              .build() + ">; rel=\"next\"");
+        }
+        return builder.bodyValue(page, Representations.listOf(elementType));
+      });
+  }
+
+  /**
+   * Whether the client asked for paging, for endpoints that return everything by default.
+   */
+  static boolean requested(ServerRequest request) {
+    return request.queryParam("limit").isPresent() || request.queryParam("after").isPresent();
+  }
+
+  static int limit(ServerRequest request) {
+    return request.queryParam("limit")
+      .map(value -> {
+        int limit;
+        try {
+          limit = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("limit must be an integer: " + value);
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+          throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+      })
+      .orElse(DEFAULT_LIMIT);
+  }
+
+  static String after(ServerRequest request) {
+    return request.queryParam("after")
+      .filter(value -> !value.isEmpty())
+      .map(value -> {
+        if (!ObjectId.isValid(value)) {
+          throw new IllegalArgumentException("after is not a valid cursor: " + value);
+        }
+        return value;
+      })
+      .orElse(null);
+  }
+}
@@ -0,0 +1,252 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The protobuf wire format of {@code src/main/proto/rewards.proto}, mapped by hand onto the
+ * entities so the build needs no protoc and no generated message classes.
+ *
+ * Follows proto3 rules: a zero {@code int32} and a null {@code optional} field are not
+ * written, unknown fields are skipped. A list message is the concatenation of its framed
+ * elements, which lets a stream be written one element at a time.
+ */
+final class EntityProtobuf {
+
+  // The repeated field of RewardList and ProjectList
+  private static final int LIST_ELEMENTS = 1;
+  private static final int LIST_ELEMENT_TAG = LIST_ELEMENTS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+  private static final Map<Class<?>, Schema<?>> SCHEMAS = Map.of(
+    Reward.class, new RewardSchema(),
+    Project.class, new ProjectSchema());
+
+  private EntityProtobuf() {
+  }
+
+  static boolean supports(Class<?> type) {
+    return SCHEMAS.containsKey(type);
+  }
+
+  /**
+   * A Reward or Project message, or a RewardList or ProjectList for a collection.
+   */
+  static byte[] write(Object value) throws IOException {
+    if (!(value instanceof Collection<?> elements)) {
+      Schema<Object> schema = schema(value.getClass());
+      byte[] bytes = new byte[schema.size(value)];
+      CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+      schema.write(output, value);
+      output.checkNoSpaceLeft();
+      return bytes;
+    }
+    int[] sizes = new int[elements.size()];
+    int total = 0;
+    int i = 0;
+    for (Object element : elements) {
+      sizes[i] = schema(element.getClass()).size(element);
+      total += elementSize(sizes[i++]);
+    }
+    byte[] bytes = new byte[total];
+    CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+    i = 0;
+    for (Object element : elements) {
+      writeElement(output, element, sizes[i++]);
+    }
+    output.checkNoSpaceLeft();
+    return bytes;
+  }
+
+  /**
+   * One element of a list message, including its field tag and length.
+   */
+  static byte[] writeElement(Object element) throws IOException {
+    int size = schema(element.getClass()).size(element);
+    byte[] bytes = new byte[elementSize(size)];
+    CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+    writeElement(output, element, size);
+    output.checkNoSpaceLeft();
+    return bytes;
+  }
+
+  static <T> T read(byte[] bytes, Class<T> type) throws IOException {
+    return type.cast(schema(type).read(CodedInputStream.newInstance(bytes)));
+  }
+
+  static <T> List<T> readList(byte[] bytes, Class<T> elementType) throws IOException {
+    Schema<Object> schema = schema(elementType);
+    CodedInputStream input = CodedInputStream.newInstance(bytes);
+    List<T> elements = new ArrayList<>();
+    for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+      if (tag != LIST_ELEMENT_TAG) {
+        input.skipField(tag);
+        continue;
+      }
+      int limit = input.pushLimit(input.readRawVarint32());
+      elements.add(elementType.cast(schema.read(input)));
+      input.checkLastTagWas(0);
+      input.popLimit(limit);
+    }
+    return elements;
+  }
+
+  private static int elementSize(int size) {
+    return CodedOutputStream.computeTagSize(LIST_ELEMENTS) + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+  }
+
+  private static void writeElement(CodedOutputStream output, Object element, int size) throws IOException {
+    output.writeTag(LIST_ELEMENTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    output.writeUInt32NoTag(size);
+    schema(element.getClass()).write(output, element);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Schema<Object> schema(Class<?> type) {
+    Schema<?> schema = SCHEMAS.get(type);
+    if (schema == null) {
+      throw new IllegalArgumentException("Cannot encode " + type.getName() + " as protobuf");
+    }
+    return (Schema<Object>) schema;
+  }
+
+  private static int sizeOf(int field, String value) {
+    return value == null ? 0 : CodedOutputStream.computeStringSize(field, value);
+  }
+
+  private static int sizeOf(int field, int value) {
+    return value == 0 ? 0 : CodedOutputStream.computeInt32Size(field, value);
+  }
+
+  private static int sizeOf(int field, Long value) {
+    return value == null ? 0 : CodedOutputStream.computeInt64Size(field, value);
+  }
+
+  private static void write(CodedOutputStream output, int field, String value) throws IOException {
+    if (value != null) {
+      output.writeString(field, value);
+    }
+  }
+
+  private static void write(CodedOutputStream output, int field, int value) throws IOException {
+    if (value != 0) {
+      output.writeInt32(field, value);
+    }
+  }
+
+  private static void write(CodedOutputStream output, int field, Long value) throws IOException {
+    if (value != null) {
+      output.writeInt64(field, value);
+    }
+  }
+
+  private interface Schema<T> {
+
+    int size(T value);
+
+    void write(CodedOutputStream output, T value) throws IOException;
+
+    /**
+     * Reads fields until the end of the input or of the current limit.
+     */
+    T read(CodedInputStream input) throws IOException;
+  }
+
+  private static final class RewardSchema implements Schema<Reward> {
+
+    private static final int ID = 1;
+    private static final int USER_ID = 2;
+    private static final int POINTS = 3;
+    private static final int DESCRIPTION = 4;
+    private static final int VERSION = 5;
+
+    @Override
+    public int size(Reward reward) {
+      return sizeOf(ID, reward.getId())
+        + sizeOf(USER_ID, reward.getUserId())
+        + sizeOf(POINTS, reward.getPoints())
+        + sizeOf(DESCRIPTION, reward.getDescription())
+        + sizeOf(VERSION, reward.getVersion());
+    }
+
+    @Override
+    public void write(CodedOutputStream output, Reward reward) throws IOException {
+      EntityProtobuf.write(output, ID, reward.getId());
+      EntityProtobuf.write(output, USER_ID, reward.getUserId());
+      EntityProtobuf.write(output, POINTS, reward.getPoints());
+      EntityProtobuf.write(output, DESCRIPTION, reward.getDescription());
+      EntityProtobuf.write(output, VERSION, reward.getVersion());
+    }
+
+    @Override
+    public Reward read(CodedInputStream input) throws IOException {
+      Reward reward = new Reward();
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        switch (tag) {
+          case ID << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> reward.setId(input.readStringRequireUtf8());
+          case USER_ID << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> reward.setUserId(input.readStringRequireUtf8());
+          case POINTS << 3 | WireFormat.WIRETYPE_VARINT -> reward.setPoints(input.readInt32());
+          case DESCRIPTION << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> reward.setDescription(input.readStringRequireUtf8());
+          case VERSION << 3 | WireFormat.WIRETYPE_VARINT -> reward.setVersion(input.readInt64());
+          default -> input.skipField(tag);
+        }
+      }
+      return reward;
+    }
+  }
+
+  private static final class ProjectSchema implements Schema<Project> {
+
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int STATUS = 3;
+    private static final int TYPE = 4;
+    private static final int PROGRESS = 5;
+    private static final int VERSION = 6;
+
+    @Override
+    public int size(Project project) {
+      return sizeOf(ID, project.getId())
+        + sizeOf(NAME, project.getName())
+        + sizeOf(STATUS, project.getStatus())
+        + sizeOf(TYPE, project.getType())
+        + sizeOf(PROGRESS, project.getProgress())
+        + sizeOf(VERSION, project.getVersion());
+    }
+
+    @Override
+    public void write(CodedOutputStream output, Project project) throws IOException {
+      EntityProtobuf.write(output, ID, project.getId());
+      EntityProtobuf.write(output, NAME, project.getName());
+      EntityProtobuf.write(output, STATUS, project.getStatus());
+      EntityProtobuf.write(output, TYPE, project.getType());
+      EntityProtobuf.write(output, PROGRESS, project.getProgress());
+      EntityProtobuf.write(output, VERSION, project.getVersion());
+    }
+
+    @Override
+    public Project read(CodedInputStream input) throws IOException {
+      Project project = new Project();
+      for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+        switch (tag) {
+          case ID << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> project.setId(input.readStringRequireUtf8());
+          case NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> project.setName(input.readStringRequireUtf8());
+          case STATUS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> project.setStatus(input.readStringRequireUtf8());
+          case TYPE << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED -> project.setType(input.readStringRequireUtf8());
+          case PROGRESS << 3 | WireFormat.WIRETYPE_VARINT -> project.setProgress(input.readInt32());
+          case VERSION << 3 | WireFormat.WIRETYPE_VARINT -> project.setVersion(input.readInt64());
+          default -> input.skipField(tag);
+        }
+      }
+      return project;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads {@code application/x-protobuf} request bodies in the format of {@code rewards.proto}:
+ * a single {@link Reward} or {@link Project} message, or a RewardList or ProjectList when a
+ * list or a stream of them is read.
+ */
+public class EntityProtobufDecoder extends AbstractDataBufferDecoder<Object> {
+
+  public EntityProtobufDecoder() {
+    super(Representations.APPLICATION_PROTOBUF);
+  }
+
+  @Override
+  public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+    return EntityProtobuf.supports(entityType(elementType)) && super.canDecode(elementType, mimeType);
+  }
+
+  /**
+   * Protobuf messages are not self-delimiting, so the whole list is read before the first
+   * element is emitted.
+   */
+  @Override
+  public Flux<Object> decode(Publisher<DataBuffer> input, ResolvableType elementType,
+                             MimeType mimeType, Map<String, Object> hints) {
+    return DataBufferUtils.join(input, getMaxInMemorySize())
+      .flatMapIterable(buffer -> readList(buffer, elementType.toClass()));
+  }
+
+  @Override
+  public Object decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+    if (Collection.class.isAssignableFrom(targetType.toClass())) {
+      return readList(buffer, entityType(targetType));
+    }
+    try {
+      return EntityProtobuf.read(bytes(buffer), targetType.toClass());
+    } catch (IOException e) {
+      throw new DecodingException("Invalid protobuf body: " + e.getMessage(), e);
+    }
+  }
+
+  private static List<?> readList(DataBuffer buffer, Class<?> elementType) {
+    try {
+      return EntityProtobuf.readList(bytes(buffer), elementType);
+    } catch (IOException e) {
+      throw new DecodingException("Invalid protobuf body: " + e.getMessage(), e);
+    }
+  }
+
+  private static byte[] bytes(DataBuffer buffer) {
+    try {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      return bytes;
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private static Class<?> entityType(ResolvableType type) {
+    return Collection.class.isAssignableFrom(type.toClass()) ? type.asCollection().getGeneric(0).toClass() : type.toClass();
+  }
+}
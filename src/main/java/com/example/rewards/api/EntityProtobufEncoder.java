@@ -0,0 +1,63 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes {@link Reward} and {@link Project}, and lists and streams of them, as
+ * {@code application/x-protobuf} in the format of {@code rewards.proto}. A list or stream is
+ * a RewardList or ProjectList message; a stream is written one element per buffer.
+ */
+public class EntityProtobufEncoder extends AbstractEncoder<Object> {
+
+  public EntityProtobufEncoder() {
+    super(Representations.APPLICATION_PROTOBUF);
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+    Class<?> type = elementType.toClass();
+    if (Collection.class.isAssignableFrom(type)) {
+      type = elementType.asCollection().getGeneric(0).toClass();
+    }
+    return EntityProtobuf.supports(type) && super.canEncode(elementType, mimeType);
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                 ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+    if (inputStream instanceof Mono<?> mono) {
+      return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+    }
+    return Flux.from(inputStream).map(element -> {
+      try {
+        return bufferFactory.wrap(EntityProtobuf.writeElement(element));
+      } catch (IOException e) {
+        throw new EncodingException("Could not write protobuf: " + e.getMessage(), e);
+      }
+    });
+  }
+
+  @Override
+  public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                MimeType mimeType, Map<String, Object> hints) {
+    try {
+      return bufferFactory.wrap(EntityProtobuf.write(value));
+    } catch (IOException e) {
+      throw new EncodingException("Could not write protobuf: " + e.getMessage(), e);
+    }
+  }
+}
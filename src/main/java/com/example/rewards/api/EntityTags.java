@@ -0,0 +1,135 @@
+package com.example.rewards.api;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Conditional request support based on the entities' {@code @Version} field.
+ *
+ * The version is sent as a strong ETag, one per representation since their bytes differ:
+ * {@code "3"} for JSON, {@code "3-cbor"} and {@code "3-pb"} for CBOR and protobuf, and
+ * {@link ResponseCompression} adds the content coding of a compressed body ({@code "3-gzip"}).
+ * GETs answer {@code If-None-Match} with 304 Not Modified before the body is serialized when it
+ * names the tag of the representation and coding being served, and writes accept
+ * {@code If-Match} with the tag of any representation or coding so a client only changes the
+ * revision it has seen. Documents written before versioning was introduced have no version and
+ * get no ETag until their next update.
+ */
+final class EntityTags {
+
+  private static final String CBOR_SUFFIX = "-cbor";
+  private static final String PROTOBUF_SUFFIX = "-pb";
+
+  private EntityTags() {
+  }
+
+  static String of(Long version, MediaType representation) {
+    return version == null ? null : "\"" + version + suffix(representation) + "\"";
+  }
+
+  private static String suffix(MediaType representation) {
+    if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(representation)) {
+      return CBOR_SUFFIX;
+    }
+    if (Representations.APPLICATION_PROTOBUF.equalsTypeAndSubtype(representation)) {
+      return PROTOBUF_SUFFIX;
+    }
+    return "";
+  }
+
+  /**
+   * The version required by the request's {@code If-Match} header, or null when the header
+   * is absent or {@code *}. The tag may be that of any representation.
+   *
+   * @throws IllegalArgumentException when the header is not a single strong ETag of this API
+   */
+  static Long ifMatch(ServerRequest request) {
+    String header = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+    if (header == null || header.isBlank() || header.trim().equals("*")) {
+      return null;
+    }
+    String tag = header.trim();
+    if (tag.startsWith("W/") || tag.contains(",")) {
+      throw new IllegalArgumentException("If-Match must be a single strong ETag");
+    }
+    if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+      tag = tag.substring(1, tag.length() - 1);
+    }
+    for (ContentCoding coding : ContentCoding.values()) {
+      tag = coding.untag(tag);
+    }
+    for (String suffix : new String[] {CBOR_SUFFIX, PROTOBUF_SUFFIX}) {
+      if (tag.endsWith(suffix)) {
+        tag = tag.substring(0, tag.length() - suffix.length());
+        break;
+      }
+    }
+    try {
+      return Long.parseLong(tag);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("If-Match is not a valid ETag: " + header);
+    }
+  }
+
+  /**
+   * 200 with the entity and its ETag, or 304 when the client's {@code If-None-Match} already
+   * names the current version in the negotiated representation.
+   */
+  static Mono<ServerResponse> okOrNotModified(ServerRequest request, Object entity, Long version) {
+    MediaType representation = Representations.negotiate(request, entity.getClass());
+    String etag = of(version, representation);
+    if (etag == null) {
+      return ok(representation, entity, null);
+    }
+    String held = heldTag(request, etag);
+    if (held != null) {
+      return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(held).varyBy(HttpHeaders.ACCEPT).build();
+    }
+    return ok(representation, entity, etag);
+  }
+
+  /**
+   * The tag of the current revision that {@code If-None-Match} names, compared weakly as for any
+   * GET: the tag of the uncompressed body, or of the body compressed with the coding negotiated
+   * for this request. Null when it names neither.
+   */
+  private static String heldTag(ServerRequest request, String etag) {
+    String compressed = request.attribute(ResponseCompression.CODING_ATTRIBUTE)
+      .map(coding -> ((ContentCoding) coding).tag(etag))
+      .orElse(null);
+    for (String tag : request.headers().asHttpHeaders().getIfNoneMatch()) {
+      String strong = tag.startsWith("W/") ? tag.substring(2) : tag;
+      if (strong.equals("*") || strong.equals(etag)) {
+        return etag;
+      }
+      if (strong.equals(compressed)) {
+        return compressed;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 200 with the entity in the representation the client negotiated, and its ETag.
+   */
+  static Mono<ServerResponse> ok(ServerRequest request, Object entity, Long version) {
+    MediaType representation = Representations.negotiate(request, entity.getClass());
+    return ok(representation, entity, of(version, representation));
+  }
+
+  private static Mono<ServerResponse> ok(MediaType representation, Object entity, String etag) {
+    ServerResponse.BodyBuilder builder = Representations.ok(representation);
+    if (etag != null) {
+      builder.eTag(etag);
+    }
+    return builder.bodyValue(entity);
+  }
+
+  static Mono<ServerResponse> preconditionFailed() {
+    return ServerResponse.status(HttpStatus.PRECONDITION_FAILED).build();
+  }
+}
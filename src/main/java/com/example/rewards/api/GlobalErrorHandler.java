@@ -1,13 +1,27 @@
 package com.example.rewards.api;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebExceptionHandler;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes failed requests as {@code {"error": message}}: 400 for invalid input (bad parameters,
+ * cursors, field selections, If-Match headers and undecodable bodies), the status of a
+ * {@link ResponseStatusException}, and 500 for anything else. A response that is already
+ * committed (a stream that failed half way) cannot change its status and is left to the server.
+ */
 @Component
 @Primary
 @Order(-2)
@@ -15,10 +29,30 @@ public class GlobalErrorHandler implements WebExceptionHandler {
 
   @Override
   public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
-    exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
-    String payload = "{\"error\":\"" + ex.getMessage() + "\"}";
-    var buffer = exchange.getResponse().bufferFactory().wrap(payload.getBytes());
-    return exchange.getResponse().writeWith(Mono.just(buffer));
+    ServerHttpResponse response = exchange.getResponse();
+    if (response.isCommitted()) {
+      return Mono.error(ex);
+    }
+    response.setStatusCode(status(ex));
+    if (ex instanceof ResponseStatusException statusException) {
+      response.getHeaders().addAll(statusException.getHeaders());
+    }
+    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    String message = ex instanceof ResponseStatusException statusException && statusException.getReason() != null
+      ? statusException.getReason()
+      : String.valueOf(ex.getMessage());
+    String payload = "{\"error\":\"" + new String(JsonStringEncoder.getInstance().quoteAsString(message)) + "\"}";
+    var buffer = response.bufferFactory().wrap(payload.getBytes(StandardCharsets.UTF_8));
+    return response.writeWith(Mono.just(buffer));
   }
-}
 
+  static HttpStatusCode status(Throwable ex) {
+    if (ex instanceof IllegalArgumentException || ex instanceof DecodingException) {
+      return HttpStatus.BAD_REQUEST;
+    }
+    if (ex instanceof ResponseStatusException statusException) {
+      return statusException.getStatusCode();
+    }
+    return HttpStatus.INTERNAL_SERVER_ERROR;
+  }
+}
@@ -0,0 +1,44 @@
+package com.example.rewards.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one request handled by {@link RewardHandler} or {@link ProjectHandler},
+ * from the request arriving until its response has been written. Committed by
+ * {@link HandlerEventFilter} when it took at least {@code rewards.jfr.handler-threshold}.
+ */
+@Name("com.example.rewards.Handler")
+@Label("Handler Invocation")
+@Category({"Rewards", "HTTP"})
+@Description("A request to the rewards or projects API")
+@StackTrace(false)
+public class HandlerEvent extends Event {
+
+  @Label("Method")
+  String method;
+
+  @Label("Route")
+  @Description("Matched path pattern")
+  String route;
+
+  @Label("Entity ID")
+  String entityId;
+
+  @Label("User ID")
+  String userId;
+
+  @Label("Status")
+  int status;
+
+  @Label("Documents")
+  @Description("Documents returned or written by repository calls made for the request")
+  long documents;
+
+  @Label("Error")
+  String error;
+}
@@ -0,0 +1,79 @@
+package com.example.rewards.api;
+
+import com.example.rewards.repo.RepositoryEventInterceptor;
+import jdk.jfr.EventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Commits a {@link HandlerEvent} for every request routed to the reward and project handlers
+ * that took at least {@code rewards.jfr.handler-threshold}. With no recording that has the
+ * event enabled, requests pass straight through.
+ *
+ * The number of documents is collected from the repository calls of the request through the
+ * Reactor {@code Context} (see {@link RepositoryEventInterceptor#DOCUMENTS}).
+ */
+@Component
+public class HandlerEventFilter implements WebFilter {
+
+  private static final EventType EVENT_TYPE = EventType.getEventType(HandlerEvent.class);
+
+  private final long thresholdNanos;
+
+  public HandlerEventFilter(@Value("${rewards.jfr.handler-threshold:10ms}") Duration threshold) {
+    this.thresholdNanos = threshold.toNanos();
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    if (!EVENT_TYPE.isEnabled()) {
+      return chain.filter(exchange);
+    }
+    HandlerEvent event = new HandlerEvent();
+    LongAdder documents = new LongAdder();
+    AtomicReference<String> error = new AtomicReference<>();
+    long start = System.nanoTime();
+    event.begin();
+    return chain.filter(exchange)
+      .doOnError(e -> error.set(e.getClass().getSimpleName()))
+      .doFinally(signal -> {
+        event.end();
+        if (signal == SignalType.CANCEL) {
+          error.compareAndSet(null, "cancelled");
+        }
+        commit(exchange, event, System.nanoTime() - start, documents.sum(), error.get());
+      })
+      .contextWrite(context -> context.put(RepositoryEventInterceptor.DOCUMENTS, documents));
+  }
+
+  private void commit(ServerWebExchange exchange, HandlerEvent event, long nanos, long documents, String error) {
+    PathPattern route = exchange.getAttribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE);
+    if (route == null || nanos < thresholdNanos || !event.shouldCommit()) {
+      return;
+    }
+    Map<String, String> variables = exchange.getAttributeOrDefault(RouterFunctions.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of());
+    HttpStatusCode status = exchange.getResponse().getStatusCode();
+    event.method = exchange.getRequest().getMethod().name();
+    event.route = route.getPatternString();
+    event.entityId = variables.get("id");
+    event.userId = variables.get("userId");
+    // A response without an explicit status goes out as 200; after an error it is not written yet
+    event.status = status != null ? status.value() : error == null ? 200 : 0;
+    event.documents = documents;
+    event.error = error;
+    event.commit();
+  }
+}
@@ -0,0 +1,121 @@
+package com.example.rewards.api;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON primitives written straight into a {@link DataBuffer}, with the escaping Jackson's
+ * default generator applies: quotes, backslashes and control characters; everything else is
+ * written as UTF-8.
+ */
+final class JsonOutput {
+
+  private static final byte[] NULL = bytes("null");
+  private static final byte[] HEX = bytes("0123456789ABCDEF");
+  private static final byte[] UNICODE_ESCAPE = bytes("u00");
+
+  private JsonOutput() {
+  }
+
+  static byte[] bytes(String ascii) {
+    return ascii.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies a pre-encoded token byte by byte: {@code DataBuffer.write(byte[])} on a heap buffer
+   * allocates a {@code ByteBuffer} view per call, which outweighs the copy for short tokens.
+   */
+  static void writeRaw(DataBuffer buffer, byte[] token) {
+    buffer.ensureWritable(token.length);
+    for (byte b : token) {
+      buffer.write(b);
+    }
+  }
+
+  /**
+   * Encodes the characters to UTF-8 here rather than through {@code DataBuffer.write(CharSequence,
+   * Charset)}, which creates a {@code CharsetEncoder} per call on buffers other than Netty's.
+   */
+  static void writeString(DataBuffer buffer, String value) {
+    if (value == null) {
+      writeRaw(buffer, NULL);
+      return;
+    }
+    buffer.write((byte) '"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (c < 0x20 || c == '"' || c == '\\') {
+          writeEscaped(buffer, c);
+        } else {
+          buffer.write((byte) c);
+        }
+      } else if (c < 0x800) {
+        buffer.write((byte) (0xC0 | c >> 6));
+        buffer.write((byte) (0x80 | c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        buffer.write((byte) (0xE0 | c >> 12));
+        buffer.write((byte) (0x80 | c >> 6 & 0x3F));
+        buffer.write((byte) (0x80 | c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.write((byte) (0xF0 | codePoint >> 18));
+        buffer.write((byte) (0x80 | codePoint >> 12 & 0x3F));
+        buffer.write((byte) (0x80 | codePoint >> 6 & 0x3F));
+        buffer.write((byte) (0x80 | codePoint & 0x3F));
+      } else {
+        // An unpaired surrogate, replaced like String.getBytes does
+        buffer.write((byte) '?');
+      }
+    }
+    buffer.write((byte) '"');
+  }
+
+  static void writeNumber(DataBuffer buffer, Long value) {
+    if (value == null) {
+      writeRaw(buffer, NULL);
+    } else {
+      writeNumber(buffer, value.longValue());
+    }
+  }
+
+  /**
+   * Writes the digits one by one instead of formatting a String first.
+   */
+  static void writeNumber(DataBuffer buffer, long value) {
+    if (value == Long.MIN_VALUE) {
+      buffer.write(Long.toString(value), StandardCharsets.US_ASCII);
+      return;
+    }
+    if (value < 0) {
+      buffer.write((byte) '-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (value / divisor >= 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      buffer.write((byte) ('0' + value / divisor));
+      value %= divisor;
+    }
+  }
+
+  private static void writeEscaped(DataBuffer buffer, char c) {
+    buffer.write((byte) '\\');
+    switch (c) {
+      case '"', '\\' -> buffer.write((byte) c);
+      case '\n' -> buffer.write((byte) 'n');
+      case '\r' -> buffer.write((byte) 'r');
+      case '\t' -> buffer.write((byte) 't');
+      case '\b' -> buffer.write((byte) 'b');
+      case '\f' -> buffer.write((byte) 'f');
+      default -> {
+        writeRaw(buffer, UNICODE_ESCAPE);
+        buffer.write(HEX[c >> 4]);
+        buffer.write(HEX[c & 0xF]);
+      }
+    }
+  }
+}
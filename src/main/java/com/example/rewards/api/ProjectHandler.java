@@ -1,56 +1,156 @@
 package com.example.rewards.api;
 
 import com.example.rewards.model.Project;
+import com.example.rewards.repo.ProjectFilter;
 import com.example.rewards.service.ProjectService;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+import java.util.Set;
+
 @Component
 public class ProjectHandler {
 
+    private static final ParameterizedTypeReference<Map<String, Object>> PATCH_BODY = new ParameterizedTypeReference<>() {
+    };
+    private static final Map<String, Class<?>> PATCHABLE_FIELDS = Map.of(
+            "name", String.class,
+            "status", String.class,
+            "type", String.class,
+            "progress", Integer.class);
+    private static final Set<String> SELECTABLE_FIELDS = Set.of("name", "status", "type", "progress", "version");
+
     private final ProjectService service;
 
     public ProjectHandler(ProjectService service) {
         this.service = service;
     }
 
+    /**
+     * Lists projects, optionally filtered by {@code status}, {@code type} and {@code minProgress}.
+     */
     public Mono<ServerResponse> getAllProjects(ServerRequest request) {
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(service.findAll(), Project.class);
+        return Mono.defer(() -> {
+            ProjectFilter filter = filter(request);
+            return SparseFields.from(request, SELECTABLE_FIELDS)
+                    .map(fields -> CursorPage.respond(request,
+                            (after, limit) -> service.findPage(filter, after, limit, fields),
+                            selected -> (String) selected.get("id"), Map.class))
+                    .orElseGet(() -> CursorPage.respond(request,
+                            (after, limit) -> service.findPage(filter, after, limit), Project::getId, Project.class));
+        });
     }
 
     public Mono<ServerResponse> getById(ServerRequest request) {
-        return service.findById(request.pathVariable("id"))
-                .flatMap(project -> ServerResponse.ok()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .bodyValue(project))
+        String id = request.pathVariable("id");
+        return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+                        .map(fields -> ServerTiming.time(ServerTiming.DB, service.findById(id, fields)).flatMap(selected -> Representations.ok(request, Map.class)
+                                .bodyValue(selected)))
+                        .orElseGet(() -> ServerTiming.time(ServerTiming.DB, service.findById(id))
+                                .flatMap(project -> EntityTags.okOrNotModified(request, project, project.getVersion()))))
                 .switchIfEmpty(ServerResponse.notFound().build());
     }
 
-    public Mono<ServerResponse> create(ServerRequest request) {
-        Mono<Project> projectMono = request.bodyToMono(Project.class);
-        return service.create(projectMono)
-                .flatMap(saved -> ServerResponse.ok()
+    public Mono<ServerResponse> getStats(ServerRequest request) {
+        return ServerTiming.time(ServerTiming.DB, service.stats())
+                .flatMap(stats -> ServerResponse.ok()
                         .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(stats));
+    }
+
+    public Mono<ServerResponse> create(ServerRequest request) {
+        return decode(request)
+                .flatMap(project -> ServerTiming.time(ServerTiming.DB, service.create(Mono.just(project))))
+                .flatMap(saved -> Representations.ok(request, Project.class)
                         .bodyValue(saved));
     }
 
     public Mono<ServerResponse> update(ServerRequest request) {
         String id = request.pathVariable("id");
-        Mono<Project> projectMono = request.bodyToMono(Project.class);
-        return service.update(id, projectMono)
-                .flatMap(saved -> ServerResponse.ok()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .bodyValue(saved))
-                .switchIfEmpty(ServerResponse.notFound().build());
+        return Mono.defer(() -> {
+                    Long expectedVersion = EntityTags.ifMatch(request);
+                    return decode(request).flatMap(project ->
+                            ServerTiming.time(ServerTiming.DB, service.update(id, Mono.just(project), expectedVersion)));
+                })
+                .flatMap(saved -> EntityTags.ok(request, saved, saved.getVersion()))
+                .switchIfEmpty(ServerResponse.notFound().build())
+                .onErrorResume(OptimisticLockingFailureException.class, e -> EntityTags.preconditionFailed());
+    }
+
+    /**
+     * Sets only the fields present in the body, atomically.
+     */
+    public Mono<ServerResponse> patch(ServerRequest request) {
+        String id = request.pathVariable("id");
+        return ServerTiming.time(ServerTiming.DECODE, request.bodyToMono(PATCH_BODY))
+                .flatMap(this::validatePatch)
+                .flatMap(changes -> ServerTiming.time(ServerTiming.DB, service.patch(id, changes, EntityTags.ifMatch(request))))
+                .flatMap(saved -> EntityTags.ok(request, saved, saved.getVersion()))
+                .switchIfEmpty(ServerResponse.notFound().build())
+                .onErrorResume(OptimisticLockingFailureException.class, e -> EntityTags.preconditionFailed());
     }
 
     public Mono<ServerResponse> delete(ServerRequest request) {
-        return service.delete(request.pathVariable("id"))
-                .then(ServerResponse.noContent().build());
+        return Mono.defer(() -> ServerTiming.time(ServerTiming.DB, service.delete(request.pathVariable("id"), EntityTags.ifMatch(request))))
+                .then(ServerResponse.noContent().build())
+                .onErrorResume(OptimisticLockingFailureException.class, e -> EntityTags.preconditionFailed());
+    }
+
+    private static Mono<Project> decode(ServerRequest request) {
+        return ServerTiming.time(ServerTiming.DECODE, request.bodyToMono(Project.class));
+    }
+
+    private static ProjectFilter filter(ServerRequest request) {
+        Integer minProgress = request.queryParam("minProgress")
+                .filter(value -> !value.isEmpty())
+                .map(value -> {
+                    int progress;
+                    try {
+                        progress = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("minProgress must be an integer: " + value);
+                    }
+                    if (progress < 0 || progress > 100) {
+                        throw new IllegalArgumentException("minProgress must be between 0 and 100");
+                    }
+                    return progress;
+                })
+                .orElse(null);
+        return new ProjectFilter(
+                request.queryParam("status").filter(value -> !value.isEmpty()).orElse(null),
+                request.queryParam("type").filter(value -> !value.isEmpty()).orElse(null),
+                minProgress);
+    }
+
+    private Mono<Map<String, Object>> validatePatch(Map<String, Object> changes) {
+        return ServerTiming.time(ServerTiming.VALIDATE, Mono.defer(() -> checkPatch(changes)));
+    }
+
+    private Mono<Map<String, Object>> checkPatch(Map<String, Object> changes) {
+        if (changes.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("No fields to update"));
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Class<?> type = PATCHABLE_FIELDS.get(change.getKey());
+            if (type == null) {
+                return Mono.error(new IllegalArgumentException("Field cannot be updated: " + change.getKey()));
+            }
+            if (change.getValue() != null && !type.isInstance(change.getValue())) {
+                return Mono.error(new IllegalArgumentException(change.getKey() + " must be of type " + type.getSimpleName()));
+            }
+        }
+        if (changes.containsKey("progress")) {
+            Object progress = changes.get("progress");
+            if (progress == null || (Integer) progress < 0 || (Integer) progress > 100) {
+                return Mono.error(new IllegalArgumentException("progress must be between 0 and 100"));
+            }
+        }
+        return Mono.just(changes);
     }
 }
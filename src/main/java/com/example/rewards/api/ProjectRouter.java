@@ -1,6 +1,7 @@
 package com.example.rewards.api;
 
 import com.example.rewards.model.Project;
+import com.example.rewards.model.ProjectStats;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
@@ -24,18 +25,35 @@ import static org.springframework.web.reactive.function.server.RequestPredicates
 @Configuration
 public class ProjectRouter {
 
+        // Project representations are negotiated by the handler; stats and deletes are JSON only
+        private static final MediaType[] ENTITY_MEDIA_TYPES = Representations.ENTITY_MEDIA_TYPES.toArray(MediaType[]::new);
+
         @Bean
         @RouterOperations({
-                        @RouterOperation(path = "/api/projects", method = RequestMethod.GET, beanClass = ProjectHandler.class, beanMethod = "getAllProjects", operation = @Operation(operationId = "getAllProjects", summary = "Get all projects", description = "Retrieve a list of all projects", tags = {
-                                        "Projects" }, responses = {
+                        @RouterOperation(path = "/api/projects", method = RequestMethod.GET, beanClass = ProjectHandler.class, beanMethod = "getAllProjects", operation = @Operation(operationId = "getAllProjects", summary = "Get all projects", description = "Retrieve a page of projects ordered by ID, optionally filtered by status, type and minimum progress. The cursor for the next page is returned in the X-Next-Cursor header", tags = {
+                                        "Projects" }, parameters = {
+                                                        @Parameter(name = "limit", in = ParameterIn.QUERY, description = "Maximum number of projects to return (1-1000, default 100)", schema = @Schema(type = "integer")),
+                                                        @Parameter(name = "after", in = ParameterIn.QUERY, description = "Cursor from a previous page's X-Next-Cursor header", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated fields to return (name, status, type, progress, version); the id is always included", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "status", in = ParameterIn.QUERY, description = "Only projects with this status, e.g. Running, Ended, Pending", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "type", in = ParameterIn.QUERY, description = "Only projects of this type, e.g. Web App", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "minProgress", in = ParameterIn.QUERY, description = "Only projects with at least this progress (0-100)", schema = @Schema(type = "integer"))
+                                        }, responses = {
                                                         @ApiResponse(responseCode = "200", description = "Successful operation", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class)))
                                         })),
+                        @RouterOperation(path = "/api/projects/stats", method = RequestMethod.GET, beanClass = ProjectHandler.class, beanMethod = "getStats", operation = @Operation(operationId = "getProjectStats", summary = "Get project portfolio statistics", description = "Counts per status and type, average progress and a progress histogram over all projects. Served from a snapshot that is refreshed when projects change", tags = {
+                                        "Projects" }, responses = {
+                                                        @ApiResponse(responseCode = "200", description = "Successful operation", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProjectStats.class)))
+                                        })),
                         @RouterOperation(path = "/api/projects/{id}", method = RequestMethod.GET, beanClass = ProjectHandler.class, beanMethod = "getById", operation = @Operation(operationId = "getProjectById", summary = "Find project by ID", description = "Returns a single project", tags = {
                                         "Projects" }, parameters = {
-                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to return", schema = @Schema(type = "string"))
+                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to return", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "If-None-Match", in = ParameterIn.HEADER, required = false, description = "ETag of a cached copy; answered with 304 when it is still current", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "fields", in = ParameterIn.QUERY, description = "Comma-separated fields to return (name, status, type, progress, version); the id is always included", schema = @Schema(type = "string"))
                                         }, responses = {
                                                         @ApiResponse(responseCode = "200", description = "Successful operation", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class))),
-                                                        @ApiResponse(responseCode = "404", description = "Project not found")
+                                                        @ApiResponse(responseCode = "404", description = "Project not found"),
+                                                        @ApiResponse(responseCode = "304", description = "Not modified")
                                         })),
                         @RouterOperation(path = "/api/projects", method = RequestMethod.POST, beanClass = ProjectHandler.class, beanMethod = "create", operation = @Operation(operationId = "createProject", summary = "Create a new project", description = "Add a new project to the system", tags = {
                                         "Projects" }, requestBody = @RequestBody(required = true, description = "Project object that needs to be added", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class))), responses = {
@@ -43,33 +61,53 @@ public class ProjectRouter {
                                         })),
                         @RouterOperation(path = "/api/projects/{id}", method = RequestMethod.PUT, beanClass = ProjectHandler.class, beanMethod = "update", operation = @Operation(operationId = "updateProject", summary = "Update an existing project", description = "Update a project by ID", tags = {
                                         "Projects" }, parameters = {
-                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to update", schema = @Schema(type = "string"))
+                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to update", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "If-Match", in = ParameterIn.HEADER, required = false, description = "Only apply the change when the project is still at this ETag", schema = @Schema(type = "string"))
                                         }, requestBody = @RequestBody(required = true, description = "Updated project object", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class))), responses = {
                                                         @ApiResponse(responseCode = "200", description = "Successful operation", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class))),
-                                                        @ApiResponse(responseCode = "404", description = "Project not found")
+                                                        @ApiResponse(responseCode = "404", description = "Project not found"),
+                                                        @ApiResponse(responseCode = "412", description = "Project was modified since the given ETag")
+                                        })),
+                        @RouterOperation(path = "/api/projects/{id}", method = RequestMethod.PATCH, beanClass = ProjectHandler.class, beanMethod = "patch", operation = @Operation(operationId = "patchProject", summary = "Partially update a project", description = "Atomically sets only the fields present in the body (name, status, type, progress)", tags = {
+                                        "Projects" }, parameters = {
+                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to update", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "If-Match", in = ParameterIn.HEADER, required = false, description = "Only apply the change when the project is still at this ETag", schema = @Schema(type = "string"))
+                                        }, requestBody = @RequestBody(required = true, description = "Fields to set", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class))), responses = {
+                                                        @ApiResponse(responseCode = "200", description = "Successful operation", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = Project.class))),
+                                                        @ApiResponse(responseCode = "400", description = "Invalid input"),
+                                                        @ApiResponse(responseCode = "404", description = "Project not found"),
+                                                        @ApiResponse(responseCode = "412", description = "Project was modified since the given ETag")
                                         })),
                         @RouterOperation(path = "/api/projects/{id}", method = RequestMethod.DELETE, beanClass = ProjectHandler.class, beanMethod = "delete", operation = @Operation(operationId = "deleteProject", summary = "Delete a project", description = "Delete a project by ID", tags = {
                                         "Projects" }, parameters = {
-                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to delete", schema = @Schema(type = "string"))
+                                                        @Parameter(name = "id", in = ParameterIn.PATH, required = true, description = "ID of project to delete", schema = @Schema(type = "string")),
+                                                        @Parameter(name = "If-Match", in = ParameterIn.HEADER, required = false, description = "Only apply the change when the project is still at this ETag", schema = @Schema(type = "string"))
                                         }, responses = {
                                                         @ApiResponse(responseCode = "204", description = "Successful operation"),
-                                                        @ApiResponse(responseCode = "404", description = "Project not found")
+                                                        @ApiResponse(responseCode = "404", description = "Project not found"),
+                                                        @ApiResponse(responseCode = "412", description = "Project was modified since the given ETag")
                                         }))
         })
-        public RouterFunction<ServerResponse> projectRoutes(ProjectHandler handler) {
+        public RouterFunction<ServerResponse> projectRoutes(ProjectHandler handler, RouteMetrics metrics) {
                 return RouterFunctions
-                                .route(GET("/api/projects").and(accept(MediaType.APPLICATION_JSON)),
+                                .route(GET("/api/projects").and(accept(ENTITY_MEDIA_TYPES)),
                                                 handler::getAllProjects)
-                                .andRoute(GET("/api/projects/{id}").and(accept(MediaType.APPLICATION_JSON)),
+                                .andRoute(GET("/api/projects/stats").and(accept(MediaType.APPLICATION_JSON)),
+                                                handler::getStats)
+                                .andRoute(GET("/api/projects/{id}").and(accept(ENTITY_MEDIA_TYPES)),
                                                 handler::getById)
                                 .andRoute(org.springframework.web.reactive.function.server.RequestPredicates
                                                 .POST("/api/projects")
-                                                .and(accept(MediaType.APPLICATION_JSON)), handler::create)
+                                                .and(accept(ENTITY_MEDIA_TYPES)), handler::create)
                                 .andRoute(org.springframework.web.reactive.function.server.RequestPredicates
                                                 .PUT("/api/projects/{id}")
-                                                .and(accept(MediaType.APPLICATION_JSON)), handler::update)
+                                                .and(accept(ENTITY_MEDIA_TYPES)), handler::update)
+                                .andRoute(org.springframework.web.reactive.function.server.RequestPredicates
+                                                .PATCH("/api/projects/{id}")
+                                                .and(accept(ENTITY_MEDIA_TYPES)), handler::patch)
                                 .andRoute(org.springframework.web.reactive.function.server.RequestPredicates
                                                 .DELETE("/api/projects/{id}").and(accept(MediaType.APPLICATION_JSON)),
-                                                handler::delete);
+                                                handler::delete)
+                                .filter(metrics);
         }
 }
@@ -0,0 +1,70 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Content negotiation between JSON, CBOR and protobuf for reward and project bodies.
+ *
+ * JSON stays the default: it is served unless the Accept header prefers
+ * {@code application/cbor} or {@code application/x-protobuf}. Protobuf is only offered for
+ * full rewards and projects ({@code rewards.proto}); sparse field selections are JSON or CBOR.
+ * Responses vary by Accept so caches keep the representations apart, and each
+ * representation of an entity revision has its own ETag ({@link EntityTags}).
+ */
+final class Representations {
+
+  static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+  /**
+   * The types entity routes accept and produce, in order of preference.
+   */
+  static final List<MediaType> ENTITY_MEDIA_TYPES =
+    List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, APPLICATION_PROTOBUF);
+
+  private static final List<MediaType> SELECTION_MEDIA_TYPES =
+    List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
+
+  private Representations() {
+  }
+
+  /**
+   * The first of the offered types for {@code type} that the client accepts, by quality and
+   * then in the client's order; JSON when there is none.
+   */
+  static MediaType negotiate(ServerRequest request, Class<?> type) {
+    List<MediaType> offered = type == Reward.class || type == Project.class ? ENTITY_MEDIA_TYPES : SELECTION_MEDIA_TYPES;
+    return request.headers().accept().stream()
+      .filter(accepted -> accepted.getQualityValue() > 0)
+      .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+      .flatMap(accepted -> offered.stream().filter(accepted::includes))
+      .findFirst()
+      .orElse(MediaType.APPLICATION_JSON);
+  }
+
+  /**
+   * A 200 response in the negotiated representation of {@code type}.
+   */
+  static ServerResponse.BodyBuilder ok(ServerRequest request, Class<?> type) {
+    return ok(negotiate(request, type));
+  }
+
+  static ServerResponse.BodyBuilder ok(MediaType representation) {
+    return ServerResponse.ok()
+      .contentType(representation)
+      .varyBy(HttpHeaders.ACCEPT);
+  }
+
+  static <T> ParameterizedTypeReference<List<T>> listOf(Class<?> elementType) {
+    return ParameterizedTypeReference.forType(ResolvableType.forClassWithGenerics(List.class, elementType).getType());
+  }
+}
@@ -0,0 +1,212 @@
+package com.example.rewards.api;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compresses response bodies with the content coding negotiated from {@code Accept-Encoding}:
+ * zstd, gzip or deflate, in the order of {@code rewards.compression.encodings}.
+ *
+ * Only whole bodies of the configured content types are compressed, and only when they reach
+ * the minimum size of their route; streams (NDJSON, SSE) are flushed per element and pass
+ * through. Routes are configured by the pattern they are declared with under
+ * {@code rewards.compression.routes}. For routes with {@code cache: true} the compressed body
+ * of each URL and representation is kept, and is sent again without compressing while the
+ * uncompressed body stays byte for byte the same.
+ *
+ * A compressed body is other bytes than the identity one, so its ETag gets the coding as a
+ * suffix ({@code "3"} becomes {@code "3-gzip"}), as Apache's mod_deflate does. The coding
+ * negotiated for the request is kept in the {@link #CODING_ATTRIBUTE} exchange attribute, so
+ * that {@link EntityTags} recognizes the suffixed tag in {@code If-None-Match}.
+ * Disable with {@code rewards.compression.enabled=false}.
+ */
+@Component
+// Inside ServerTiming, so compression counts towards encode and total
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "rewards.compression.enabled", matchIfMissing = true)
+public class ResponseCompression implements WebFilter {
+
+  // Body bytes of compressed responses before and after compression, per coding
+  static final String BYTES = "http.compression.bytes";
+  // Lookups of routes with cache: true; a hit is a compressed body sent again as it was
+  static final String CACHE = "http.compression.cache";
+  static final String CODING_ATTRIBUTE = ResponseCompression.class.getName() + ".coding";
+
+  private final CompressionProperties properties;
+  private final List<ContentCoding> codings;
+  private final List<MediaType> mimeTypes;
+  private final Map<String, RouteSettings> routes = new ConcurrentHashMap<>();
+  private final Cache<CacheKey, Compressed> cache;
+  private final Map<ContentCoding, Counter> originalBytes = new EnumMap<>(ContentCoding.class);
+  private final Map<ContentCoding, Counter> compressedBytes = new EnumMap<>(ContentCoding.class);
+  private final Counter cacheHits;
+  private final Counter cacheMisses;
+
+  @Autowired
+  public ResponseCompression(CompressionProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+    this(properties, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public ResponseCompression(CompressionProperties properties, MeterRegistry registry) {
+    this.properties = properties;
+    this.codings = properties.encodings().stream()
+      .map(ContentCoding::of)
+      .filter(ContentCoding::available)
+      .toList();
+    this.mimeTypes = properties.mimeTypes().stream().map(MediaType::parseMediaType).toList();
+    // Weighed in bytes: one large page would otherwise count as much as a small one
+    this.cache = properties.cacheMaxSize().toBytes() > 0
+      ? Caffeine.newBuilder()
+        .maximumWeight(properties.cacheMaxSize().toBytes())
+        .<CacheKey, Compressed>weigher((key, entry) -> entry.body().length + entry.compressed().length)
+        .build()
+      : null;
+    for (ContentCoding coding : codings) {
+      originalBytes.put(coding, Counter.builder(BYTES).tag("encoding", coding.token()).tag("body", "original").register(registry));
+      compressedBytes.put(coding, Counter.builder(BYTES).tag("encoding", coding.token()).tag("body", "compressed").register(registry));
+    }
+    this.cacheHits = Counter.builder(CACHE).tag("result", "hit").register(registry);
+    this.cacheMisses = Counter.builder(CACHE).tag("result", "miss").register(registry);
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    ContentCoding coding = ContentCoding.negotiate(
+      exchange.getRequest().getHeaders().get(HttpHeaders.ACCEPT_ENCODING), codings);
+    if (coding != null) {
+      exchange.getAttributes().put(CODING_ATTRIBUTE, coding);
+    }
+    return chain.filter(exchange.mutate().response(new CompressingResponse(exchange, coding)).build());
+  }
+
+  private RouteSettings settings(ServerWebExchange exchange) {
+    PathPattern pattern = exchange.getAttribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE);
+    String route = pattern == null ? "" : pattern.getPatternString();
+    return routes.computeIfAbsent(route, key -> {
+      CompressionProperties.Route overrides = properties.routes().get(key);
+      if (overrides == null) {
+        return new RouteSettings(true, properties.minSize().toBytes(), false);
+      }
+      return new RouteSettings(
+        overrides.enabled() == null || overrides.enabled(),
+        (overrides.minSize() != null ? overrides.minSize() : properties.minSize()).toBytes(),
+        overrides.cache() && cache != null);
+    });
+  }
+
+  private boolean compressible(HttpHeaders headers) {
+    MediaType contentType = headers.getContentType();
+    return contentType != null
+      && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)
+      && mimeTypes.stream().anyMatch(contentType::isCompatibleWith);
+  }
+
+  private byte[] compress(ServerWebExchange exchange, ContentCoding coding, byte[] body, boolean cached) {
+    if (!cached) {
+      return coding.compress(body);
+    }
+    CacheKey key = new CacheKey(exchange.getRequest().getURI().getRawPath() + "?" + exchange.getRequest().getURI().getRawQuery(),
+      exchange.getResponse().getHeaders().getContentType(), coding);
+    Compressed entry = cache.getIfPresent(key);
+    if (entry != null && Arrays.equals(entry.body(), body)) {
+      cacheHits.increment();
+      return entry.compressed();
+    }
+    cacheMisses.increment();
+    byte[] compressed = coding.compress(body);
+    cache.put(key, new Compressed(body, compressed));
+    return compressed;
+  }
+
+  private record RouteSettings(boolean enabled, long minSize, boolean cache) {
+  }
+
+  private record CacheKey(String uri, MediaType contentType, ContentCoding coding) {
+  }
+
+  private record Compressed(byte[] body, byte[] compressed) {
+  }
+
+  private final class CompressingResponse extends ServerHttpResponseDecorator {
+
+    private final ServerWebExchange exchange;
+    private final ContentCoding coding;
+
+    CompressingResponse(ServerWebExchange exchange, ContentCoding coding) {
+      super(exchange.getResponse());
+      this.exchange = exchange;
+      this.coding = coding;
+    }
+
+    /**
+     * Whole bodies only: streamed responses are written through {@code writeAndFlushWith}.
+     */
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      HttpHeaders headers = getHeaders();
+      RouteSettings route = settings(exchange);
+      if (!route.enabled() || !compressible(headers)) {
+        return super.writeWith(body);
+      }
+      List<String> vary = headers.getVary();
+      if (!vary.contains(HttpHeaders.ACCEPT_ENCODING)) {
+        // A copy: the values set by ServerResponse's varyBy cannot be added to
+        List<String> varyWithEncoding = new ArrayList<>(vary);
+        varyWithEncoding.add(HttpHeaders.ACCEPT_ENCODING);
+        headers.setVary(varyWithEncoding);
+      }
+      if (coding == null || headers.getContentLength() >= 0 && headers.getContentLength() < route.minSize()) {
+        return super.writeWith(body);
+      }
+      return DataBufferUtils.join(body).flatMap(buffer -> {
+        int size = buffer.readableByteCount();
+        if (size < route.minSize()) {
+          return super.writeWith(Mono.just(buffer));
+        }
+        byte[] original = new byte[size];
+        buffer.read(original);
+        DataBufferUtils.release(buffer);
+        byte[] compressed = compress(exchange, coding, original, route.cache());
+        if (compressed.length >= size) {
+          return super.writeWith(Mono.just(bufferFactory().wrap(original)));
+        }
+        originalBytes.get(coding).increment(size);
+        compressedBytes.get(coding).increment(compressed.length);
+        headers.set(HttpHeaders.CONTENT_ENCODING, coding.token());
+        headers.setContentLength(compressed.length);
+        if (headers.getETag() != null) {
+          headers.setETag(coding.tag(headers.getETag()));
+        }
+        return super.writeWith(Mono.just(bufferFactory().wrap(compressed)));
+      });
+    }
+  }
+}
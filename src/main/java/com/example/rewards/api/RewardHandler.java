@@ -1,19 +1,39 @@
 package com.example.rewards.api;
 
+import com.example.rewards.model.BatchItemResult;
+import com.example.rewards.model.PointsIncrement;
 import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
 import com.example.rewards.service.RewardService;
 import jakarta.validation.Validator;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Component
 public class RewardHandler {
 
+  private static final int MAX_BALANCE_USERS = 100;
+  private static final ParameterizedTypeReference<Map<String, Object>> PATCH_BODY = new ParameterizedTypeReference<>() {
+  };
+  private static final Map<String, Class<?>> PATCHABLE_FIELDS = Map.of(
+    "userId", String.class,
+    "points", Integer.class,
+    "description", String.class);
+  private static final Set<String> SELECTABLE_FIELDS = Set.of("userId", "points", "description", "version");
+
   private final RewardService service;
   private final SpringValidatorAdapter validator;
 
@@ -22,51 +42,204 @@ public class RewardHandler {
     this.validator = new SpringValidatorAdapter(validator);
   }
 
+  /**
+   * One page of rewards, the first {@link CursorPage#DEFAULT_LIMIT} when no {@code limit} is
+   * given. Every reward is only returned by {@link #streamAll}.
+   */
   public Mono<ServerResponse> getAll(ServerRequest request) {
-    return ServerResponse.ok()
-      .contentType(MediaType.APPLICATION_JSON)
-      .body(service.findAll(), Reward.class);
+    return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+      .map(fields -> CursorPage.respond(request, (after, limit) -> service.findPage(after, limit, fields), RewardHandler::idOf, Map.class))
+      .orElseGet(() -> CursorPage.respond(request, service::findPage, Reward::getId, Reward.class)));
+  }
+
+  /**
+   * Streams every reward as NDJSON or Server-Sent Events. Each element is written and
+   * flushed as soon as Mongo delivers it, and demand follows the client's read rate.
+   */
+  public Mono<ServerResponse> streamAll(ServerRequest request) {
+    return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+      .map(fields -> stream(request, service.findAll(fields)))
+      .orElseGet(() -> stream(request, service.findAll())));
   }
 
+  /**
+   * The full reward carries an ETag; sparse selections are different representations and are
+   * returned without one.
+   */
   public Mono<ServerResponse> getById(ServerRequest request) {
-    return service.findById(request.pathVariable("id"))
-      .flatMap(reward -> ServerResponse.ok()
-        .contentType(MediaType.APPLICATION_JSON)
-        .bodyValue(reward))
+    String id = request.pathVariable("id");
+    return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+        .map(fields -> ServerTiming.time(ServerTiming.DB, service.findById(id, fields)).flatMap(selected -> Representations.ok(request, Map.class)
+          .bodyValue(selected)))
+        .orElseGet(() -> ServerTiming.time(ServerTiming.DB, service.findById(id))
+          .flatMap(reward -> EntityTags.okOrNotModified(request, reward, reward.getVersion()))))
       .switchIfEmpty(ServerResponse.notFound().build());
   }
 
+  /**
+   * All of the user's rewards, or one page of them ordered by id when {@code limit} or
+   * {@code after} is given.
+   */
   public Mono<ServerResponse> getByUser(ServerRequest request) {
     String userId = request.pathVariable("userId");
+    if (CursorPage.requested(request)) {
+      return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+        .map(fields -> CursorPage.respond(request,
+          (after, limit) -> service.findPageByUser(userId, after, limit, fields), RewardHandler::idOf, Map.class))
+        .orElseGet(() -> CursorPage.respond(request,
+          (after, limit) -> service.findPageByUser(userId, after, limit), Reward::getId, Reward.class)));
+    }
+    return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+      .map(fields -> Representations.ok(request, Map.class)
+        .body(ServerTiming.time(ServerTiming.DB, service.findByUser(userId, fields)), Map.class))
+      .orElseGet(() -> Representations.ok(request, Reward.class)
+        .body(ServerTiming.time(ServerTiming.DB, service.findByUser(userId)), Reward.class)));
+  }
+
+  public Mono<ServerResponse> streamByUser(ServerRequest request) {
+    String userId = request.pathVariable("userId");
+    return Mono.defer(() -> SparseFields.from(request, SELECTABLE_FIELDS)
+      .map(fields -> stream(request, service.findByUser(userId, fields)))
+      .orElseGet(() -> stream(request, service.streamByUser(userId))));
+  }
+
+  public Mono<ServerResponse> getBalance(ServerRequest request) {
+    return ServerTiming.time(ServerTiming.DB, service.balanceFor(request.pathVariable("userId")))
+      .flatMap(balance -> ServerResponse.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(balance));
+  }
+
+  public Mono<ServerResponse> getBalances(ServerRequest request) {
+    List<String> userIds = request.queryParams().getOrDefault("userId", List.of()).stream()
+      .flatMap(value -> Arrays.stream(value.split(",")))
+      .map(String::trim)
+      .filter(userId -> !userId.isEmpty())
+      .distinct()
+      .toList();
+    if (userIds.isEmpty()) {
+      return Mono.error(new IllegalArgumentException("At least one userId is required"));
+    }
+    if (userIds.size() > MAX_BALANCE_USERS) {
+      return Mono.error(new IllegalArgumentException("At most " + MAX_BALANCE_USERS + " userIds are allowed"));
+    }
     return ServerResponse.ok()
       .contentType(MediaType.APPLICATION_JSON)
-      .body(service.findByUser(userId), Reward.class);
+      .body(ServerTiming.time(ServerTiming.DB, service.balancesFor(userIds)), UserBalance.class);
   }
 
   public Mono<ServerResponse> create(ServerRequest request) {
-    Mono<Reward> validated = request.bodyToMono(Reward.class).flatMap(this::validate);
-    return service.create(validated)
-      .flatMap(saved -> ServerResponse.ok()
-        .contentType(MediaType.APPLICATION_JSON)
+    return decode(request)
+      .flatMap(this::validate)
+      .flatMap(reward -> ServerTiming.time(ServerTiming.DB, service.create(Mono.just(reward))))
+      .flatMap(saved -> Representations.ok(request, Reward.class)
         .bodyValue(saved));
   }
 
+  /**
+   * Creates every reward in a JSON array, NDJSON, CBOR array or RewardList body. Invalid
+   * elements are reported individually instead of failing the whole request.
+   */
+  public Mono<ServerResponse> createBatch(ServerRequest request) {
+    Flux<BatchItemResult> results = service.createAll(request.bodyToFlux(Reward.class), this::validate);
+    MediaType contentType = RewardRouter.acceptsStreaming(request)
+      ? RewardRouter.streamingMediaType(request)
+      : MediaType.APPLICATION_JSON;
+    return ServerResponse.ok()
+      .contentType(contentType)
+      .body(results, BatchItemResult.class);
+  }
+
   public Mono<ServerResponse> update(ServerRequest request) {
     String id = request.pathVariable("id");
-    Mono<Reward> validated = request.bodyToMono(Reward.class).flatMap(this::validate);
-    return service.update(id, validated)
-      .flatMap(saved -> ServerResponse.ok()
-        .contentType(MediaType.APPLICATION_JSON)
-        .bodyValue(saved))
+    return Mono.defer(() -> {
+        Long expectedVersion = EntityTags.ifMatch(request);
+        return decode(request)
+          .flatMap(this::validate)
+          .flatMap(reward -> ServerTiming.time(ServerTiming.DB, service.update(id, Mono.just(reward), expectedVersion)));
+      })
+      .flatMap(saved -> EntityTags.ok(request, saved, saved.getVersion()))
+      .switchIfEmpty(ServerResponse.notFound().build())
+      .onErrorResume(OptimisticLockingFailureException.class, e -> EntityTags.preconditionFailed());
+  }
+
+  /**
+   * Sets only the fields present in the body, atomically.
+   */
+  public Mono<ServerResponse> patch(ServerRequest request) {
+    String id = request.pathVariable("id");
+    return ServerTiming.time(ServerTiming.DECODE, request.bodyToMono(PATCH_BODY))
+      .flatMap(this::validatePatch)
+      .flatMap(changes -> ServerTiming.time(ServerTiming.DB, service.patch(id, changes, EntityTags.ifMatch(request))))
+      .flatMap(saved -> EntityTags.ok(request, saved, saved.getVersion()))
+      .switchIfEmpty(ServerResponse.notFound().build())
+      .onErrorResume(OptimisticLockingFailureException.class, e -> EntityTags.preconditionFailed());
+  }
+
+  public Mono<ServerResponse> incrementPoints(ServerRequest request) {
+    String id = request.pathVariable("id");
+    return ServerTiming.time(ServerTiming.DECODE, request.bodyToMono(PointsIncrement.class))
+      .filter(increment -> increment.amount() != null)
+      .switchIfEmpty(Mono.error(new IllegalArgumentException("amount is required")))
+      .flatMap(increment -> ServerTiming.time(ServerTiming.DB, service.incrementPoints(id, increment.amount())))
+      .flatMap(saved -> EntityTags.ok(request, saved, saved.getVersion()))
       .switchIfEmpty(ServerResponse.notFound().build());
   }
 
   public Mono<ServerResponse> delete(ServerRequest request) {
-    return service.delete(request.pathVariable("id"))
-      .then(ServerResponse.noContent().build());
+    return Mono.defer(() -> ServerTiming.time(ServerTiming.DB, service.delete(request.pathVariable("id"), EntityTags.ifMatch(request))))
+      .then(ServerResponse.noContent().build())
+      .onErrorResume(OptimisticLockingFailureException.class, e -> EntityTags.preconditionFailed());
+  }
+
+  private Mono<ServerResponse> stream(ServerRequest request, Flux<?> rewards) {
+    return ServerResponse.ok()
+      .contentType(RewardRouter.streamingMediaType(request))
+      .body(ServerTiming.time(ServerTiming.DB, rewards), Object.class);
+  }
+
+  private static Mono<Reward> decode(ServerRequest request) {
+    return ServerTiming.time(ServerTiming.DECODE, request.bodyToMono(Reward.class));
+  }
+
+  private static String idOf(Map<String, Object> selected) {
+    return (String) selected.get("id");
+  }
+
+  private Mono<Map<String, Object>> validatePatch(Map<String, Object> changes) {
+    return ServerTiming.time(ServerTiming.VALIDATE, Mono.defer(() -> checkPatch(changes)));
+  }
+
+  private Mono<Map<String, Object>> checkPatch(Map<String, Object> changes) {
+    if (changes.isEmpty()) {
+      return Mono.error(new IllegalArgumentException("No fields to update"));
+    }
+    for (Map.Entry<String, Object> change : changes.entrySet()) {
+      String field = change.getKey();
+      Object value = change.getValue();
+      Class<?> type = PATCHABLE_FIELDS.get(field);
+      if (type == null) {
+        return Mono.error(new IllegalArgumentException("Field cannot be updated: " + field));
+      }
+      if (value != null && !type.isInstance(value)) {
+        return Mono.error(new IllegalArgumentException(field + " must be of type " + type.getSimpleName()));
+      }
+      if (value == null && type == Integer.class) {
+        return Mono.error(new IllegalArgumentException(field + " must not be null"));
+      }
+      var violations = validator.validateValue(Reward.class, field, value);
+      if (!violations.isEmpty()) {
+        return Mono.error(new IllegalArgumentException(field + " " + violations.iterator().next().getMessage()));
+      }
+    }
+    return Mono.just(changes);
   }
 
   private Mono<Reward> validate(Reward reward) {
+    return ServerTiming.time(ServerTiming.VALIDATE, Mono.defer(() -> check(reward)));
+  }
+
+  private Mono<Reward> check(Reward reward) {
     BeanPropertyBindingResult errors = new BeanPropertyBindingResult(reward, Reward.class.getName());
     validator.validate(reward, errors);
     if (errors.hasErrors()) {
@@ -1,9 +1,13 @@
 package com.example.rewards.api;
 
+import com.example.rewards.model.BatchItemResult;
+import com.example.rewards.model.PointsIncrement;
 import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
@@ -16,11 +20,19 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
 @Configuration
 public class RewardRouter {
 
+  private static final List<MediaType> STREAMING_MEDIA_TYPES =
+    List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
   @Bean
   @RouterOperations({
     @RouterOperation(
@@ -30,17 +42,49 @@ public class RewardRouter {
       beanMethod = "getAll",
       operation = @Operation(
         operationId = "getAllRewards",
-        summary = "Get all rewards",
-        description = "Retrieve a list of all rewards",
+        summary = "Get rewards, one page at a time",
+        description = "Retrieve a page of rewards ordered by ID. Without limit and after, only the first 100 rewards are returned. "
+          + "The cursor for the next page is returned in the X-Next-Cursor header. "
+          + "Clients accepting application/x-ndjson or text/event-stream receive every reward as a stream instead",
         tags = {"Rewards"},
+        parameters = {
+          @Parameter(
+            name = "limit",
+            in = ParameterIn.QUERY,
+            description = "Maximum number of rewards to return (1-1000, default 100)",
+            schema = @Schema(type = "integer")
+          ),
+          @Parameter(
+            name = "after",
+            in = ParameterIn.QUERY,
+            description = "Cursor from a previous page's X-Next-Cursor header",
+            schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "fields",
+            in = ParameterIn.QUERY,
+            description = "Comma-separated fields to return (userId, points, description, version); the id is always included",
+            schema = @Schema(type = "string")
+          )
+        },
         responses = {
           @ApiResponse(
             responseCode = "200",
             description = "Successful operation",
-            content = @Content(
-              mediaType = MediaType.APPLICATION_JSON_VALUE,
-              schema = @Schema(implementation = Reward.class)
-            )
+            content = {
+              @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = Reward.class)
+              ),
+              @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                schema = @Schema(implementation = Reward.class)
+              ),
+              @Content(
+                mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                schema = @Schema(implementation = Reward.class)
+              )
+            }
           )
         }
       )
@@ -62,6 +106,19 @@ public class RewardRouter {
             required = true,
             description = "ID of reward to return",
             schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "If-None-Match",
+            in = ParameterIn.HEADER,
+            required = false,
+            description = "ETag of a cached copy; answered with 304 when it is still current",
+            schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "fields",
+            in = ParameterIn.QUERY,
+            description = "Comma-separated fields to return (userId, points, description, version); the id is always included",
+            schema = @Schema(type = "string")
           )
         },
         responses = {
@@ -76,6 +133,10 @@ public class RewardRouter {
           @ApiResponse(
             responseCode = "404",
             description = "Reward not found"
+          ),
+          @ApiResponse(
+            responseCode = "304",
+            description = "Not modified"
           )
         }
       )
@@ -88,7 +149,8 @@ public class RewardRouter {
       operation = @Operation(
         operationId = "getRewardsByUser",
         summary = "Find rewards by user ID",
-        description = "Returns all rewards for a specific user",
+        description = "Returns all rewards for a specific user. "
+          + "Clients accepting application/x-ndjson or text/event-stream receive the rewards as a stream",
         tags = {"Rewards"},
         parameters = {
           @Parameter(
@@ -97,6 +159,65 @@ public class RewardRouter {
             required = true,
             description = "User ID to find rewards for",
             schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "limit",
+            in = ParameterIn.QUERY,
+            description = "Return one page of at most this many rewards (1-1000) instead of all of them",
+            schema = @Schema(type = "integer")
+          ),
+          @Parameter(
+            name = "after",
+            in = ParameterIn.QUERY,
+            description = "Cursor from a previous page's X-Next-Cursor header",
+            schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "fields",
+            in = ParameterIn.QUERY,
+            description = "Comma-separated fields to return (userId, points, description, version); the id is always included",
+            schema = @Schema(type = "string")
+          )
+        },
+        responses = {
+          @ApiResponse(
+            responseCode = "200",
+            description = "Successful operation",
+            content = {
+              @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = Reward.class)
+              ),
+              @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                schema = @Schema(implementation = Reward.class)
+              ),
+              @Content(
+                mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                schema = @Schema(implementation = Reward.class)
+              )
+            }
+          )
+        }
+      )
+    ),
+    @RouterOperation(
+      path = "/api/rewards/user/{userId}/balance",
+      method = RequestMethod.GET,
+      beanClass = RewardHandler.class,
+      beanMethod = "getBalance",
+      operation = @Operation(
+        operationId = "getUserBalance",
+        summary = "Get a user's points balance",
+        description = "Returns the total points and reward count for a user without transferring the rewards",
+        tags = {"Rewards"},
+        parameters = {
+          @Parameter(
+            name = "userId",
+            in = ParameterIn.PATH,
+            required = true,
+            description = "User ID to compute the balance for",
+            schema = @Schema(type = "string")
           )
         },
         responses = {
@@ -105,8 +226,43 @@ public class RewardRouter {
             description = "Successful operation",
             content = @Content(
               mediaType = MediaType.APPLICATION_JSON_VALUE,
-              schema = @Schema(implementation = Reward.class)
+              schema = @Schema(implementation = UserBalance.class)
+            )
+          )
+        }
+      )
+    ),
+    @RouterOperation(
+      path = "/api/rewards/balances",
+      method = RequestMethod.GET,
+      beanClass = RewardHandler.class,
+      beanMethod = "getBalances",
+      operation = @Operation(
+        operationId = "getUserBalances",
+        summary = "Get points balances for several users",
+        description = "Returns one balance per requested user, in request order. Users without rewards have a zero balance",
+        tags = {"Rewards"},
+        parameters = {
+          @Parameter(
+            name = "userId",
+            in = ParameterIn.QUERY,
+            required = true,
+            description = "User IDs, repeated or comma-separated (at most 100)",
+            schema = @Schema(type = "string")
+          )
+        },
+        responses = {
+          @ApiResponse(
+            responseCode = "200",
+            description = "Successful operation",
+            content = @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = UserBalance.class)
             )
+          ),
+          @ApiResponse(
+            responseCode = "400",
+            description = "Invalid input"
           )
         }
       )
@@ -145,6 +301,49 @@ public class RewardRouter {
         }
       )
     ),
+    @RouterOperation(
+      path = "/api/rewards/batch",
+      method = RequestMethod.POST,
+      beanClass = RewardHandler.class,
+      beanMethod = "createBatch",
+      operation = @Operation(
+        operationId = "createRewardBatch",
+        summary = "Create many rewards",
+        description = "Validates and inserts every reward in the body using chunked unordered bulk writes. "
+          + "Returns one result per element, in input order",
+        tags = {"Rewards"},
+        requestBody = @RequestBody(
+          required = true,
+          description = "Rewards to add, as a JSON array or newline-delimited JSON",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              array = @ArraySchema(schema = @Schema(implementation = Reward.class))
+            ),
+            @Content(
+              mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+              schema = @Schema(implementation = Reward.class)
+            )
+          }
+        ),
+        responses = {
+          @ApiResponse(
+            responseCode = "200",
+            description = "Per-element results",
+            content = {
+              @Content(
+                mediaType = MediaType.APPLICATION_JSON_VALUE,
+                array = @ArraySchema(schema = @Schema(implementation = BatchItemResult.class))
+              ),
+              @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                schema = @Schema(implementation = BatchItemResult.class)
+              )
+            }
+          )
+        }
+      )
+    ),
     @RouterOperation(
       path = "/api/rewards/{id}",
       method = RequestMethod.PUT,
@@ -162,6 +361,13 @@ public class RewardRouter {
             required = true,
             description = "ID of reward to update",
             schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "If-Match",
+            in = ParameterIn.HEADER,
+            required = false,
+            description = "Only apply the change when the reward is still at this ETag",
+            schema = @Schema(type = "string")
           )
         },
         requestBody = @RequestBody(
@@ -172,6 +378,115 @@ public class RewardRouter {
             schema = @Schema(implementation = Reward.class)
           )
         ),
+        responses = {
+          @ApiResponse(
+            responseCode = "200",
+            description = "Successful operation",
+            content = @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = Reward.class)
+            )
+          ),
+          @ApiResponse(
+            responseCode = "404",
+            description = "Reward not found"
+          ),
+          @ApiResponse(
+            responseCode = "400",
+            description = "Invalid input"
+          ),
+          @ApiResponse(
+            responseCode = "412",
+            description = "Reward was modified since the given ETag"
+          )
+        }
+      )
+    ),
+    @RouterOperation(
+      path = "/api/rewards/{id}",
+      method = RequestMethod.PATCH,
+      beanClass = RewardHandler.class,
+      beanMethod = "patch",
+      operation = @Operation(
+        operationId = "patchReward",
+        summary = "Partially update a reward",
+        description = "Atomically sets only the fields present in the body (userId, points, description)",
+        tags = {"Rewards"},
+        parameters = {
+          @Parameter(
+            name = "id",
+            in = ParameterIn.PATH,
+            required = true,
+            description = "ID of reward to update",
+            schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "If-Match",
+            in = ParameterIn.HEADER,
+            required = false,
+            description = "Only apply the change when the reward is still at this ETag",
+            schema = @Schema(type = "string")
+          )
+        },
+        requestBody = @RequestBody(
+          required = true,
+          description = "Fields to set",
+          content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = Reward.class)
+          )
+        ),
+        responses = {
+          @ApiResponse(
+            responseCode = "200",
+            description = "Successful operation",
+            content = @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = Reward.class)
+            )
+          ),
+          @ApiResponse(
+            responseCode = "404",
+            description = "Reward not found"
+          ),
+          @ApiResponse(
+            responseCode = "400",
+            description = "Invalid input"
+          ),
+          @ApiResponse(
+            responseCode = "412",
+            description = "Reward was modified since the given ETag"
+          )
+        }
+      )
+    ),
+    @RouterOperation(
+      path = "/api/rewards/{id}/points:increment",
+      method = RequestMethod.POST,
+      beanClass = RewardHandler.class,
+      beanMethod = "incrementPoints",
+      operation = @Operation(
+        operationId = "incrementRewardPoints",
+        summary = "Add points to a reward",
+        description = "Atomically adds the amount to the reward's points. Negative amounts may not take points below zero",
+        tags = {"Rewards"},
+        parameters = {
+          @Parameter(
+            name = "id",
+            in = ParameterIn.PATH,
+            required = true,
+            description = "ID of reward to update",
+            schema = @Schema(type = "string")
+          )
+        },
+        requestBody = @RequestBody(
+          required = true,
+          description = "Amount to add",
+          content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = PointsIncrement.class)
+          )
+        ),
         responses = {
           @ApiResponse(
             responseCode = "200",
@@ -209,6 +524,13 @@ public class RewardRouter {
             required = true,
             description = "ID of reward to delete",
             schema = @Schema(type = "string")
+          ),
+          @Parameter(
+            name = "If-Match",
+            in = ParameterIn.HEADER,
+            required = false,
+            description = "Only apply the change when the reward is still at this ETag",
+            schema = @Schema(type = "string")
           )
         },
         responses = {
@@ -219,20 +541,58 @@ public class RewardRouter {
           @ApiResponse(
             responseCode = "404",
             description = "Reward not found"
+          ),
+          @ApiResponse(
+            responseCode = "412",
+            description = "Reward was modified since the given ETag"
           )
         }
       )
     )
   })
-  public RouterFunction<ServerResponse> routes(RewardHandler handler) {
+  public RouterFunction<ServerResponse> routes(RewardHandler handler, RouteMetrics metrics) {
     return RouterFunctions.route()
+      .GET("/api/rewards", RewardRouter::acceptsStreaming, handler::streamAll)
       .GET("/api/rewards", handler::getAll)
+      .GET("/api/rewards/balances", handler::getBalances)
       .GET("/api/rewards/{id}", handler::getById)
+      .GET("/api/rewards/user/{userId}", RewardRouter::acceptsStreaming, handler::streamByUser)
       .GET("/api/rewards/user/{userId}", handler::getByUser)
+      .GET("/api/rewards/user/{userId}/balance", handler::getBalance)
       .POST("/api/rewards", handler::create)
+      .POST("/api/rewards/batch", handler::createBatch)
       .PUT("/api/rewards/{id}", handler::update)
+      .PATCH("/api/rewards/{id}", handler::patch)
+      .POST("/api/rewards/{id}/points:increment", handler::incrementPoints)
       .DELETE("/api/rewards/{id}", handler::delete)
+      .filter(metrics)
       .build();
   }
-}
 
+  /**
+   * True when the client ranks NDJSON or Server-Sent Events above the other representations of
+   * the route, by quality and then in its own order. Wildcard Accept headers, and headers that
+   * prefer JSON (e.g. {@code application/json, application/x-ndjson;q=0.1}), keep getting the
+   * JSON array response.
+   */
+  static boolean acceptsStreaming(ServerRequest request) {
+    return preferredStreamingType(request).isPresent();
+  }
+
+  /**
+   * The streaming media type the client prefers; NDJSON when it prefers none.
+   */
+  static MediaType streamingMediaType(ServerRequest request) {
+    return preferredStreamingType(request).orElse(MediaType.APPLICATION_NDJSON);
+  }
+
+  private static Optional<MediaType> preferredStreamingType(ServerRequest request) {
+    return request.headers().accept().stream()
+      .filter(accepted -> accepted.getQualityValue() > 0)
+      .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+      .filter(accepted -> STREAMING_MEDIA_TYPES.stream().anyMatch(accepted::equalsTypeAndSubtype)
+        || Representations.ENTITY_MEDIA_TYPES.stream().anyMatch(accepted::includes))
+      .findFirst()
+      .flatMap(first -> STREAMING_MEDIA_TYPES.stream().filter(first::equalsTypeAndSubtype).findFirst());
+  }
+}
@@ -0,0 +1,208 @@
+package com.example.rewards.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-route request metrics, applied as a filter to the reward and project routers.
+ *
+ * Routes are identified by HTTP method and matched path pattern (e.g. {@code GET
+ * /api/rewards/{id}}), so the meters stay bounded however many ids are requested:
+ * <ul>
+ *   <li>{@code http.route.latency}: timer with a percentile histogram, from the handler
+ *       being called until the response body has been written</li>
+ *   <li>{@code http.route.in.flight}: gauge of requests currently being handled</li>
+ *   <li>{@code http.route.responses}: counter per response status; {@code CANCELLED} when
+ *       the client went away first</li>
+ * </ul>
+ * Comparing the latency of a route with {@code mongodb.driver.commands} for its collection
+ * shows whether time goes to the handler or to the database.
+ */
+@Component
+public class RouteMetrics implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+  static final String LATENCY = "http.route.latency";
+  static final String IN_FLIGHT = "http.route.in.flight";
+  static final String RESPONSES = "http.route.responses";
+
+  private static final String UNMATCHED = "UNMATCHED";
+  private static final String CANCELLED = "CANCELLED";
+
+  private final MeterRegistry registry;
+  private final Map<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+  @Autowired
+  public RouteMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+    this(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public RouteMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+    String method = request.method().name();
+    String pattern = request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+      .map(value -> ((PathPattern) value).getPatternString())
+      .orElse(UNMATCHED);
+    RouteMeters meters = routes.computeIfAbsent(method + " " + pattern, key -> new RouteMeters(method, pattern));
+    Sample sample = meters.start();
+    AtomicBoolean responded = new AtomicBoolean();
+    return next.handle(request)
+      .<ServerResponse>map(response -> {
+        responded.set(true);
+        return new MeasuredResponse(response, sample);
+      })
+      // An error is rendered by GlobalErrorHandler; record the status it writes for it
+      .doOnError(error -> sample.stop(GlobalErrorHandler.status(error)))
+      // A response stops the sample once written; without one the request ends here
+      .doFinally(signal -> {
+        if (signal == SignalType.CANCEL) {
+          sample.stop(null);
+        } else if (!responded.get()) {
+          sample.stop(HttpStatus.OK);
+        }
+      });
+  }
+
+  /**
+   * The status written to the client; a response without an explicit status goes out as 200.
+   */
+  private static HttpStatusCode statusOf(ServerWebExchange exchange) {
+    HttpStatusCode status = exchange.getResponse().getStatusCode();
+    return status == null ? HttpStatus.OK : status;
+  }
+
+  private final class RouteMeters {
+
+    private final String method;
+    private final String pattern;
+    private final Timer latency;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, Counter> responses = new ConcurrentHashMap<>();
+
+    RouteMeters(String method, String pattern) {
+      this.method = method;
+      this.pattern = pattern;
+      this.latency = Timer.builder(LATENCY)
+        .description("Time to handle a request and write its response")
+        .tag("method", method)
+        .tag("route", pattern)
+        .publishPercentileHistogram()
+        .register(registry);
+      Gauge.builder(IN_FLIGHT, inFlight, AtomicInteger::get)
+        .description("Requests currently being handled")
+        .tag("method", method)
+        .tag("route", pattern)
+        .register(registry);
+    }
+
+    Sample start() {
+      inFlight.incrementAndGet();
+      return new Sample(this, System.nanoTime());
+    }
+
+    void record(long nanos, HttpStatusCode status) {
+      inFlight.decrementAndGet();
+      latency.record(nanos, TimeUnit.NANOSECONDS);
+      String code = status == null ? CANCELLED : String.valueOf(status.value());
+      responses.computeIfAbsent(code, key -> Counter.builder(RESPONSES)
+          .description("Responses by status")
+          .tag("method", method)
+          .tag("route", pattern)
+          .tag("status", key)
+          .register(registry))
+        .increment();
+    }
+  }
+
+  /**
+   * One request; stopped exactly once, whichever of completion, error or cancellation comes first.
+   */
+  private static final class Sample {
+
+    private final RouteMeters meters;
+    private final long start;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    Sample(RouteMeters meters, long start) {
+      this.meters = meters;
+      this.start = start;
+    }
+
+    void stop(HttpStatusCode status) {
+      if (stopped.compareAndSet(false, true)) {
+        meters.record(System.nanoTime() - start, status);
+      }
+    }
+  }
+
+  /**
+   * Stops the sample once the body has been written, so encoding and streamed bodies count.
+   */
+  private static final class MeasuredResponse implements ServerResponse {
+
+    private final ServerResponse delegate;
+    private final Sample sample;
+
+    MeasuredResponse(ServerResponse delegate, Sample sample) {
+      this.delegate = delegate;
+      this.sample = sample;
+    }
+
+    @Override
+    public HttpStatusCode statusCode() {
+      return delegate.statusCode();
+    }
+
+    // Still abstract in ServerResponse, although deprecated for removal
+    @Override
+    @SuppressWarnings("removal")
+    public int rawStatusCode() {
+      return delegate.statusCode().value();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+      return delegate.headers();
+    }
+
+    @Override
+    public MultiValueMap<String, ResponseCookie> cookies() {
+      return delegate.cookies();
+    }
+
+    @Override
+    public Mono<Void> writeTo(ServerWebExchange exchange, Context context) {
+      return delegate.writeTo(exchange, context)
+        .doFinally(signal -> sample.stop(signal == SignalType.CANCEL ? null : statusOf(exchange)));
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.example.rewards.api;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adds a {@code Server-Timing} header that splits each response's latency into phases:
+ * <ul>
+ *   <li>{@code decode}: reading and deserializing the request body</li>
+ *   <li>{@code validate}: bean validation of the decoded body</li>
+ *   <li>{@code db}: the service/repository call</li>
+ *   <li>{@code encode}: from the end of the last phase until the response is committed,
+ *       i.e. building the response and serializing its body</li>
+ *   <li>{@code total}: from the request arriving until the response is committed</li>
+ * </ul>
+ * The handlers wrap each phase with {@link #time(String, Mono)}; the timings of a request
+ * travel in the Reactor {@code Context} set up by this filter, so nothing is shared between
+ * requests. The header is written when the response is committed, so a phase that is still
+ * running then (a streamed body) is not included, and neither is {@code encode}.
+ *
+ * Disable with {@code rewards.server-timing.enabled=false}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "rewards.server-timing.enabled", matchIfMissing = true)
+public class ServerTiming implements WebFilter {
+
+  static final String HEADER = "Server-Timing";
+
+  static final String DECODE = "decode";
+  static final String VALIDATE = "validate";
+  static final String DB = "db";
+  static final String ENCODE = "encode";
+  static final String TOTAL = "total";
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    Timings timings = new Timings(System.nanoTime());
+    exchange.getResponse().beforeCommit(() -> {
+      exchange.getResponse().getHeaders().add(HEADER, timings.header(System.nanoTime()));
+      return Mono.empty();
+    });
+    return chain.filter(exchange).contextWrite(context -> context.put(Timings.class, timings));
+  }
+
+  /**
+   * Records the time from subscription until {@code source} emits its value or terminates as
+   * {@code phase}. The phase is stopped before the value is passed on, so work done
+   * downstream of it is not counted. Outside a request with timings this returns
+   * {@code source} unchanged.
+   */
+  static <T> Mono<T> time(String phase, Mono<T> source) {
+    return Mono.deferContextual(context -> context.<Timings>getOrEmpty(Timings.class)
+      .map(timings -> {
+        Phase running = timings.start(phase);
+        return source.doOnNext(value -> running.stop())
+          .doOnTerminate(running::stop)
+          .doOnCancel(running::stop);
+      })
+      .orElse(source));
+  }
+
+  /**
+   * Records the time from subscription until {@code source} terminates as {@code phase}.
+   */
+  static <T> Flux<T> time(String phase, Flux<T> source) {
+    return Flux.deferContextual(context -> context.<Timings>getOrEmpty(Timings.class)
+      .map(timings -> {
+        Phase running = timings.start(phase);
+        return source.doOnTerminate(running::stop)
+          .doOnCancel(running::stop);
+      })
+      .orElse(source));
+  }
+
+  static final class Timings {
+
+    private final long received;
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    private int running;
+    private long lastStop;
+
+    Timings(long received) {
+      this.received = received;
+    }
+
+    synchronized Phase start(String phase) {
+      running++;
+      return new Phase(this, phase, System.nanoTime());
+    }
+
+    synchronized void stop(String phase, long start) {
+      long now = System.nanoTime();
+      running--;
+      durations.merge(phase, now - start, Long::sum);
+      lastStop = Math.max(lastStop, now);
+    }
+
+    synchronized String header(long committed) {
+      StringBuilder header = new StringBuilder();
+      durations.forEach((phase, nanos) -> append(header, phase, nanos));
+      if (running == 0 && lastStop != 0) {
+        append(header, ENCODE, committed - lastStop);
+      }
+      append(header, TOTAL, committed - received);
+      return header.toString();
+    }
+
+    private static void append(StringBuilder header, String phase, long nanos) {
+      if (!header.isEmpty()) {
+        header.append(", ");
+      }
+      header.append(phase).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+  }
+
+  /**
+   * One timed phase; only the first stop counts.
+   */
+  private static final class Phase {
+
+    private final Timings timings;
+    private final String name;
+    private final long start;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    Phase(Timings timings, String name, long start) {
+      this.timings = timings;
+      this.name = name;
+      this.start = start;
+    }
+
+    void stop() {
+      if (stopped.compareAndSet(false, true)) {
+        timings.stop(name, start);
+      }
+    }
+  }
+}
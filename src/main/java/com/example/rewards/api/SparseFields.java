@@ -0,0 +1,44 @@
+package com.example.rewards.api;
+
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Parses the {@code ?fields=} sparse fieldset parameter, e.g. {@code ?fields=userId,points}.
+ *
+ * The id is always returned and does not need to be listed. Unknown names are rejected
+ * rather than ignored so a typo does not silently return less than the client expects.
+ */
+final class SparseFields {
+
+  static final String PARAM = "fields";
+
+  private SparseFields() {
+  }
+
+  /**
+   * The selected fields in request order, or empty when the parameter is absent and the
+   * full entity should be returned.
+   *
+   * @throws IllegalArgumentException when a name is not in {@code selectable}
+   */
+  static Optional<Set<String>> from(ServerRequest request, Set<String> selectable) {
+    return request.queryParam(PARAM).map(value -> {
+      Set<String> fields = new LinkedHashSet<>();
+      Arrays.stream(value.split(","))
+        .map(String::trim)
+        .filter(field -> !field.isEmpty() && !field.equals("id"))
+        .forEach(field -> {
+          if (!selectable.contains(field)) {
+            throw new IllegalArgumentException("Unknown field: " + field);
+          }
+          fields.add(field);
+        });
+      return fields;
+    });
+  }
+}
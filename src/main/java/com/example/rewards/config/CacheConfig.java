@@ -0,0 +1,35 @@
+package com.example.rewards.config;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.example.rewards.service.EntityCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Entity caches in front of the repositories' findById. Sizes and TTLs are set per profile
+ * under {@code rewards.cache}; a max-size of 0 disables a cache.
+ */
+@Configuration
+public class CacheConfig {
+
+  @Bean
+  EntityCache<Reward> rewardCache(ObjectProvider<MeterRegistry> meterRegistry,
+                                  @Value("${rewards.cache.rewards.max-size:10000}") long maxSize,
+                                  @Value("${rewards.cache.rewards.ttl:60s}") Duration ttl) {
+    return new EntityCache<>("rewards", maxSize, ttl, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  @Bean
+  EntityCache<Project> projectCache(ObjectProvider<MeterRegistry> meterRegistry,
+                                    @Value("${rewards.cache.projects.max-size:1000}") long maxSize,
+                                    @Value("${rewards.cache.projects.ttl:60s}") Duration ttl) {
+    return new EntityCache<>("projects", maxSize, ttl, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+}
@@ -0,0 +1,51 @@
+package com.example.rewards.config;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Counts the open connections of the HTTP server and, once {@code max} are open, stops accepting
+ * until one of them closes: further clients wait in the accept backlog instead of being refused.
+ * The server may accept a few more than {@code max} in the batch it is reading when the limit is
+ * reached. One instance is shared by all connections; {@code max} 0 only counts.
+ */
+@ChannelHandler.Sharable
+final class ConnectionLimit extends ChannelInboundHandlerAdapter {
+
+  private final int max;
+  private int open;
+
+  ConnectionLimit(int max) {
+    this.max = max;
+  }
+
+  @Override
+  public void channelActive(ChannelHandlerContext ctx) {
+    Channel server = ctx.channel().parent();
+    opened(server);
+    ctx.channel().closeFuture().addListener(future -> closed(server));
+    ctx.fireChannelActive();
+  }
+
+  synchronized int open() {
+    return open;
+  }
+
+  // Synchronized, so that autoRead always ends up matching the count when connections of
+  // different event loops open and close at the same time
+  private synchronized void opened(Channel server) {
+    open++;
+    if (max > 0 && open >= max && server != null) {
+      server.config().setAutoRead(false);
+    }
+  }
+
+  private synchronized void closed(Channel server) {
+    open--;
+    if (max > 0 && open < max && server != null) {
+      server.config().setAutoRead(true);
+    }
+  }
+}
@@ -2,8 +2,10 @@ package com.example.rewards.config;
 
 import com.example.rewards.model.Project;
 import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
 import com.example.rewards.repo.ProjectRepository;
 import com.example.rewards.repo.RewardRepository;
+import com.example.rewards.service.UserBalanceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.ApplicationRunner;
@@ -25,7 +27,8 @@ public class DataInitializer {
 
   @Bean
   @Order(2) // Run after MongoConnectionValidator (Order 1)
-  ApplicationRunner initData(ReactiveMongoTemplate template, RewardRepository rewardRepository, ProjectRepository projectRepository, Environment environment) {
+  ApplicationRunner initData(ReactiveMongoTemplate template, RewardRepository rewardRepository, ProjectRepository projectRepository,
+                             UserBalanceService userBalanceService, IndexVerifier indexVerifier, Environment environment) {
     return args -> {
       // Check if we're in a cloud environment
       boolean isCloudEnvironment = isCloudEnvironment(environment);
@@ -46,25 +49,16 @@ public class DataInitializer {
       // Proceed with initialization
       log.info("Starting database initialization...");
       
+      // Index verification runs on its own: building an index on a large collection can take
+      // a long time and must not hold up seeding or startup. verify() logs instead of failing.
       Mono<Void> initRewards = ensureCollection(template, Reward.class)
-        .then(rewardRepository.count())
-        .timeout(OPERATION_TIMEOUT)
-        .filter(count -> count == 0)
-        .flatMapMany(ignored -> {
-          log.info("Rewards Database is empty. Seeding with sample data...");
-          return rewardRepository.saveAll(sampleRewards());
-        })
-        .then();
+        .doOnSuccess(ignored -> indexVerifier.verify(Reward.class).subscribe())
+        .then(seedRewards(rewardRepository))
+        .then(rebuildBalancesIfNeeded(template, userBalanceService, environment));
 
       Mono<Void> initProjects = ensureCollection(template, Project.class)
-        .then(projectRepository.count())
-        .timeout(OPERATION_TIMEOUT)
-        .filter(count -> count == 0)
-        .flatMapMany(ignored -> {
-           log.info("Projects Database is empty. Seeding with sample data...");
-           return projectRepository.saveAll(sampleProjects());
-        })
-        .then();
+        .doOnSuccess(ignored -> indexVerifier.verify(Project.class).subscribe())
+        .then(seedProjects(projectRepository));
 
       Mono.when(initRewards, initProjects)
         .doOnSuccess(ignored -> {
@@ -116,6 +110,28 @@ public class DataInitializer {
     return uri.replaceAll("://([^:]+):([^@]+)@", "://$1:***@");
   }
 
+  private Mono<Void> seedRewards(RewardRepository rewardRepository) {
+    return rewardRepository.count()
+      .timeout(OPERATION_TIMEOUT)
+      .filter(count -> count == 0)
+      .flatMapMany(ignored -> {
+        log.info("Rewards Database is empty. Seeding with sample data...");
+        return rewardRepository.saveAll(sampleRewards());
+      })
+      .then();
+  }
+
+  private Mono<Void> seedProjects(ProjectRepository projectRepository) {
+    return projectRepository.count()
+      .timeout(OPERATION_TIMEOUT)
+      .filter(count -> count == 0)
+      .flatMapMany(ignored -> {
+        log.info("Projects Database is empty. Seeding with sample data...");
+        return projectRepository.saveAll(sampleProjects());
+      })
+      .then();
+  }
+
   private Mono<Void> ensureCollection(ReactiveMongoTemplate template, Class<?> entityClass) {
     return template.collectionExists(entityClass)
       .timeout(OPERATION_TIMEOUT)
@@ -130,6 +146,23 @@ public class DataInitializer {
       });
   }
 
+  /**
+   * Seeded or pre-existing rewards have no materialized balances yet, so rebuild them when
+   * the balance collection is empty, or on every start when
+   * {@code rewards.balances.rebuild-on-startup} is set.
+   */
+  private Mono<Void> rebuildBalancesIfNeeded(ReactiveMongoTemplate template, UserBalanceService userBalanceService, Environment environment) {
+    boolean forced = environment.getProperty("rewards.balances.rebuild-on-startup", Boolean.class, false);
+    return template.estimatedCount(UserBalance.class)
+      .timeout(OPERATION_TIMEOUT)
+      .filter(count -> forced || count == 0)
+      .flatMap(ignored -> {
+        log.info("Rebuilding user balances from rewards...");
+        return userBalanceService.rebuild();
+      })
+      .then();
+  }
+
   private Flux<Reward> sampleRewards() {
     return Flux.just(
       new Reward("user-1", 100, "welcome bonus"),
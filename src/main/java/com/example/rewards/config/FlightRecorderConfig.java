@@ -0,0 +1,54 @@
+package com.example.rewards.config;
+
+import com.example.rewards.repo.CommandEventListener;
+import com.example.rewards.repo.RepositoryEventInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.time.Duration;
+
+/**
+ * Custom JFR events ({@code com.example.rewards.Handler}, {@code com.example.rewards.Repository},
+ * {@code com.example.rewards.MongoCommand}) for continuous low-overhead recording in production,
+ * e.g. {@code -XX:StartFlightRecording=maxage=6h,filename=/tmp/rewards.jfr}. Events faster than
+ * {@code rewards.jfr.handler-threshold} / {@code repository-threshold} / {@code command-threshold}
+ * are dropped.
+ *
+ * The handler events are committed by {@code HandlerEventFilter}; this adds the interceptor
+ * that records repository calls to every Spring Data repository proxy, and the listener that
+ * records every command of the Mongo client, whether sent by a repository or a template.
+ */
+@Configuration
+public class FlightRecorderConfig {
+
+  @Bean
+  static BeanPostProcessor repositoryEvents(ObjectProvider<MongoMappingContext> mappingContext,
+                                            @Value("${rewards.jfr.repository-threshold:1ms}") Duration threshold) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repository) {
+          repository.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+            (proxy, information) -> proxy.addAdvice(new RepositoryEventInterceptor(
+              information.getRepositoryInterface(),
+              information.getDomainType(),
+              entity -> mappingContext.getObject().getRequiredPersistentEntity(entity.getClass())
+                .getIdentifierAccessor(entity).getIdentifier(),
+              threshold))));
+        }
+        return bean;
+      }
+    };
+  }
+
+  @Bean
+  MongoClientSettingsBuilderCustomizer commandEvents(@Value("${rewards.jfr.command-threshold:1ms}") Duration threshold) {
+    return settings -> settings.addCommandListener(new CommandEventListener(threshold));
+  }
+}
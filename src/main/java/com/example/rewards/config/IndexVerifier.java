@@ -0,0 +1,131 @@
+package com.example.rewards.config;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the indexes declared on an entity ({@code @Indexed}, {@code @CompoundIndex})
+ * with the indexes that exist on its collection.
+ *
+ * Declared indexes that are missing are built; MongoDB builds indexes without holding
+ * an exclusive lock for the duration of the build, and startup does not wait for them.
+ * Indexes on the collection that are not declared (created by hand, or left over from an
+ * earlier version) are only reported, never dropped.
+ */
+@Component
+public class IndexVerifier {
+
+  private static final Logger log = LoggerFactory.getLogger(IndexVerifier.class);
+
+  private final ReactiveMongoTemplate template;
+  private final IndexResolver resolver;
+
+  public IndexVerifier(ReactiveMongoTemplate template) {
+    this.template = template;
+    this.resolver = IndexResolver.create(template.getConverter().getMappingContext());
+  }
+
+  /**
+   * Builds the missing declared indexes of {@code entityClass} and logs any drift.
+   * Never fails: errors are logged so that index trouble does not prevent startup.
+   */
+  public Mono<IndexDrift> verify(Class<?> entityClass) {
+    String collection = template.getCollectionName(entityClass);
+    ReactiveIndexOperations indexOps = template.indexOps(entityClass);
+    Map<String, IndexDefinition> declared = new LinkedHashMap<>();
+    resolver.resolveIndexFor(entityClass).forEach(definition -> declared.put(keysOf(definition), definition));
+
+    return indexOps.getIndexInfo()
+      .collectMap(IndexVerifier::keysOf, IndexInfo::getName)
+      .flatMap(existing -> {
+        List<IndexDefinition> missing = declared.entrySet().stream()
+          .filter(entry -> !existing.containsKey(entry.getKey()))
+          .map(Map.Entry::getValue)
+          .toList();
+        List<String> undeclared = existing.entrySet().stream()
+          .filter(entry -> !declared.containsKey(entry.getKey()) && !"_id_".equals(entry.getValue()))
+          .map(entry -> entry.getValue() + " " + entry.getKey())
+          .toList();
+        IndexDrift drift = new IndexDrift(collection,
+          missing.stream().map(IndexVerifier::describe).toList(), undeclared);
+        report(drift);
+        return Flux.fromIterable(missing)
+          .concatMap(definition -> indexOps.ensureIndex(definition)
+            .doOnNext(name -> log.info("Built index '{}' on '{}'", name, collection))
+            .onErrorResume(e -> {
+              log.error("Could not build index {} on '{}'", describe(definition), collection, e);
+              return Mono.empty();
+            }))
+          .then(Mono.just(drift));
+      })
+      .onErrorResume(e -> {
+        log.error("Could not verify indexes of '{}'", collection, e);
+        return Mono.empty();
+      });
+  }
+
+  private static void report(IndexDrift drift) {
+    if (drift.missing().isEmpty() && drift.undeclared().isEmpty()) {
+      log.info("Indexes of '{}' match the declared model.", drift.collection());
+      return;
+    }
+    if (!drift.missing().isEmpty()) {
+      log.warn("Collection '{}' is missing declared indexes, building them: {}", drift.collection(), drift.missing());
+    }
+    if (!drift.undeclared().isEmpty()) {
+      log.warn("Collection '{}' has indexes that are not declared on the entity: {}", drift.collection(), drift.undeclared());
+    }
+  }
+
+  private static String describe(IndexDefinition definition) {
+    Object name = definition.getIndexOptions().get("name");
+    return (name == null ? "" : name + " ") + keysOf(definition);
+  }
+
+  // Indexes are matched on their key pattern, e.g. {userId: 1, _id: 1}
+  private static String keysOf(IndexDefinition definition) {
+    Document keys = definition.getIndexKeys();
+    return keys.entrySet().stream()
+      .map(entry -> entry.getKey() + ": " + (entry.getValue() instanceof Number number ? number.intValue() : entry.getValue()))
+      .collect(Collectors.joining(", ", "{", "}"));
+  }
+
+  private static String keysOf(IndexInfo info) {
+    return info.getIndexFields().stream()
+      .map(field -> field.getKey() + ": " + direction(field))
+      .collect(Collectors.joining(", ", "{", "}"));
+  }
+
+  private static Object direction(IndexField field) {
+    if (field.getDirection() != null) {
+      return field.getDirection() == Sort.Direction.ASC ? 1 : -1;
+    }
+    if (field.isHashed()) {
+      return "hashed";
+    }
+    return field.isText() ? "text" : "geo";
+  }
+
+  /**
+   * @param missing declared indexes that did not exist on the collection
+   * @param undeclared indexes on the collection that no entity declares (the {@code _id} index excluded)
+   */
+  public record IndexDrift(String collection, List<String> missing, List<String> undeclared) {
+  }
+}
@@ -0,0 +1,115 @@
+package com.example.rewards.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Resources of the Reactor Netty HTTP server, set per profile under {@code rewards.netty}:
+ * event-loop threads, the connection limit and accept backlog, concurrent HTTP/2 streams per
+ * connection and the buffer allocator. 0 keeps Reactor Netty's default for a number.
+ *
+ * HTTP/2 itself is switched on with {@code server.http2.enabled}: h2 when {@code server.ssl} is
+ * configured, cleartext h2c (prior knowledge or HTTP/1.1 upgrade) otherwise, next to HTTP/1.1.
+ * Idle and keep-alive limits are Spring Boot's own {@code server.netty.*} settings.
+ */
+@Configuration
+public class NettyServerConfig {
+
+  @Bean
+  NettyServerTuning nettyServerTuning(ObjectProvider<MeterRegistry> meterRegistry,
+                                      @Value("${rewards.netty.event-loop-threads:0}") int eventLoopThreads,
+                                      @Value("${rewards.netty.max-connections:0}") int maxConnections,
+                                      @Value("${rewards.netty.accept-backlog:0}") int acceptBacklog,
+                                      @Value("${rewards.netty.http2.max-concurrent-streams:0}") long maxConcurrentStreams,
+                                      @Value("${rewards.netty.allocator.pooled:true}") boolean pooled,
+                                      @Value("${rewards.netty.allocator.prefer-direct:true}") boolean preferDirect,
+                                      @Value("${rewards.netty.allocator.arenas:0}") int arenas,
+                                      @Value("${rewards.netty.allocator.max-order:0}") int maxOrder) {
+    NettyServerTuning tuning = new NettyServerTuning(eventLoopThreads, maxConnections, acceptBacklog, maxConcurrentStreams,
+      allocator(pooled, preferDirect, arenas, maxOrder));
+    Gauge.builder("http.server.connections.open", tuning.connections, ConnectionLimit::open)
+      .description("Open HTTP connections; new ones wait in the accept backlog at rewards.netty.max-connections")
+      .register(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    return tuning;
+  }
+
+  /**
+   * Pooled allocators keep one arena per event-loop thread by default (2 per core); fewer arenas
+   * hold less memory at the cost of more contention. The chunk size is the page size (8 KB)
+   * shifted left by {@code maxOrder}.
+   */
+  static ByteBufAllocator allocator(boolean pooled, boolean preferDirect, int arenas, int maxOrder) {
+    if (!pooled) {
+      return new UnpooledByteBufAllocator(preferDirect);
+    }
+    return new PooledByteBufAllocator(preferDirect,
+      arenas > 0 ? arenas : PooledByteBufAllocator.defaultNumHeapArena(),
+      arenas > 0 ? arenas : PooledByteBufAllocator.defaultNumDirectArena(),
+      PooledByteBufAllocator.defaultPageSize(),
+      maxOrder > 0 ? maxOrder : PooledByteBufAllocator.defaultMaxOrder(),
+      PooledByteBufAllocator.defaultSmallCacheSize(),
+      PooledByteBufAllocator.defaultNormalCacheSize(),
+      PooledByteBufAllocator.defaultUseCacheForAllThreads());
+  }
+
+  /**
+   * Applied by Spring Boot to the server it creates; owns the event loops when their number is
+   * configured, and shuts them down with the context.
+   */
+  static final class NettyServerTuning implements NettyServerCustomizer, DisposableBean {
+
+    private final LoopResources loops;
+    private final ConnectionLimit connections;
+    private final int acceptBacklog;
+    private final long maxConcurrentStreams;
+    private final ByteBufAllocator allocator;
+
+    NettyServerTuning(int eventLoopThreads, int maxConnections, int acceptBacklog, long maxConcurrentStreams,
+                      ByteBufAllocator allocator) {
+      this.loops = eventLoopThreads > 0 ? LoopResources.create("rewards-http", 1, eventLoopThreads, true) : null;
+      this.connections = new ConnectionLimit(maxConnections);
+      this.acceptBacklog = acceptBacklog;
+      this.maxConcurrentStreams = maxConcurrentStreams;
+      this.allocator = allocator;
+    }
+
+    @Override
+    public HttpServer apply(HttpServer server) {
+      HttpServer tuned = server
+        .childOption(ChannelOption.ALLOCATOR, allocator)
+        .doOnChannelInit((observer, channel, remoteAddress) -> channel.pipeline().addFirst("rewards.connectionLimit", connections))
+        // HTTP/2 streams are channels of their own, created with Netty's default allocator
+        .doOnConnection(connection -> connection.channel().config().setAllocator(allocator));
+      if (loops != null) {
+        tuned = tuned.runOn(loops);
+      }
+      if (acceptBacklog > 0) {
+        tuned = tuned.option(ChannelOption.SO_BACKLOG, acceptBacklog);
+      }
+      if (maxConcurrentStreams > 0) {
+        tuned = tuned.http2Settings(settings -> settings.maxConcurrentStreams(maxConcurrentStreams));
+      }
+      return tuned;
+    }
+
+    @Override
+    public void destroy() {
+      if (loops != null) {
+        loops.disposeLater().block();
+      }
+    }
+  }
+}
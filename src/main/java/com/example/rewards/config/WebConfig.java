@@ -1,20 +1,44 @@
 package com.example.rewards.config;
 
+import com.example.rewards.api.BufferingCborDecoder;
+import com.example.rewards.api.BufferingCborEncoder;
+import com.example.rewards.api.CompressionProperties;
+import com.example.rewards.api.EntityJsonEncoder;
+import com.example.rewards.api.EntityProtobufDecoder;
+import com.example.rewards.api.EntityProtobufEncoder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.web.reactive.config.CorsRegistry;
 import org.springframework.web.reactive.config.EnableWebFlux;
 import org.springframework.web.reactive.config.WebFluxConfigurer;
 
 @Configuration
 @EnableWebFlux
+@EnableConfigurationProperties(CompressionProperties.class)
 public class WebConfig implements WebFluxConfigurer {
 
   @Override
   public void addCorsMappings(CorsRegistry registry) {
     registry.addMapping("/api/**")
       .allowedOrigins("*")
-      .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+      .allowedMethods("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")
       .allowedHeaders("*")
       .maxAge(3600);
   }
+
+  /**
+   * Rewards and projects, and lists of them, are written by {@link EntityJsonEncoder};
+   * custom writers are consulted before the default Jackson one. CBOR (Jackson) and the
+   * {@code rewards.proto} protobuf codecs serve the other representations the handlers
+   * negotiate.
+   */
+  @Override
+  public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+    configurer.customCodecs().register(new EntityJsonEncoder());
+    configurer.customCodecs().register(new EntityProtobufEncoder());
+    configurer.customCodecs().register(new EntityProtobufDecoder());
+    configurer.customCodecs().register(new BufferingCborEncoder());
+    configurer.customCodecs().register(new BufferingCborDecoder());
+  }
 }
@@ -0,0 +1,31 @@
+package com.example.rewards.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of one element of a batch request")
+public record BatchItemResult(
+  @Schema(description = "Zero-based position of the element in the request body", example = "0")
+  long index,
+  @Schema(description = "ID of the created document, when it was written", example = "507f1f77bcf86cd799439011")
+  String id,
+  @Schema(description = "created, invalid or failed", example = "created")
+  String status,
+  @Schema(description = "Why the element was not written")
+  String error) {
+
+  public static final String CREATED = "created";
+  public static final String INVALID = "invalid";
+  public static final String FAILED = "failed";
+
+  public static BatchItemResult created(long index, String id) {
+    return new BatchItemResult(index, id, CREATED, null);
+  }
+
+  public static BatchItemResult invalid(long index, String error) {
+    return new BatchItemResult(index, null, INVALID, error);
+  }
+
+  public static BatchItemResult failed(long index, String error) {
+    return new BatchItemResult(index, null, FAILED, error);
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.rewards.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+@Schema(description = "Amount to add to a reward's points")
+public record PointsIncrement(
+  @NotNull
+  @Schema(description = "Points to add; negative values subtract", example = "25", requiredMode = Schema.RequiredMode.REQUIRED)
+  Integer amount) {
+}
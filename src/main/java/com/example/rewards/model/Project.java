@@ -2,9 +2,19 @@ package com.example.rewards.model;
 
 // import io.swagger.v3.oas.annotations.media.Schema;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "projects")
+// Filtered listings match on status and/or type, page by _id and may add a progress range:
+// equality fields first, then the sort key, then the range. minProgress alone has no equality
+// prefix: a selective range reads progress_id and sorts the few matches, a wide one walks _id
+// and filters; the planner picks whichever finds the page first.
+@CompoundIndex(name = "status_type_id_progress", def = "{'status': 1, 'type': 1, '_id': 1, 'progress': 1}")
+@CompoundIndex(name = "status_id_progress", def = "{'status': 1, '_id': 1, 'progress': 1}")
+@CompoundIndex(name = "type_id_progress", def = "{'type': 1, '_id': 1, 'progress': 1}")
+@CompoundIndex(name = "progress_id", def = "{'progress': 1, '_id': 1}")
 // @Schema(description = "Project details")
 public class Project {
 
@@ -28,6 +38,9 @@ public class Project {
     // maximum = "100")
     private int progress; // 0-100
 
+    @Version
+    private Long version; // incremented on every change, returned as the ETag
+
     public Project() {
     }
 
@@ -77,4 +90,12 @@ public class Project {
     public void setProgress(int progress) {
         this.progress = progress;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,22 @@
+package com.example.rewards.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Schema(description = "Portfolio statistics over all projects")
+public record ProjectStats(
+  @Schema(description = "Number of projects", example = "4")
+  long total,
+  @Schema(description = "Number of projects per status", example = "{\"Running\": 2, \"Ended\": 1, \"Pending\": 1}")
+  Map<String, Long> byStatus,
+  @Schema(description = "Number of projects per type", example = "{\"Web App\": 2, \"Mobile App\": 1, \"Desktop App\": 1}")
+  Map<String, Long> byType,
+  @Schema(description = "Average progress in percent", example = "50.0")
+  double averageProgress,
+  @Schema(description = "Number of projects per progress range", example = "{\"0-24\": 1, \"25-49\": 1, \"50-74\": 0, \"75-99\": 1, \"100\": 1}")
+  Map<String, Long> progressHistogram,
+  @Schema(description = "When the statistics were computed")
+  Instant computedAt) {
+}
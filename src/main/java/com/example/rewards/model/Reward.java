@@ -4,9 +4,14 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document("rewards")
+// Serves findByUserId and the per-user pages ordered by _id; its userId prefix makes a
+// separate single-field userId index redundant
+@CompoundIndex(name = "userId_id", def = "{'userId': 1, '_id': 1}")
 @Schema(description = "Reward entity representing user rewards")
 public class Reward {
   @Id
@@ -24,6 +29,10 @@ public class Reward {
   @Schema(description = "Description of the reward", example = "Completed a challenge")
   private String description;
 
+  @Version
+  @Schema(description = "Revision of the reward, incremented on every change. Returned as the ETag", example = "3", accessMode = Schema.AccessMode.READ_ONLY)
+  private Long version;
+
   public Reward() {
   }
 
@@ -69,5 +78,12 @@ public class Reward {
   public void setDescription(String description) {
     this.description = description;
   }
-}
 
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+}
@@ -0,0 +1,56 @@
+package com.example.rewards.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document("user_balances")
+@Schema(description = "Total reward points and reward count for a user")
+public class UserBalance {
+  @Id
+  @Schema(description = "User ID the balance belongs to", example = "user123")
+  private String userId;
+
+  @Schema(description = "Sum of points over all of the user's rewards", example = "350")
+  private long totalPoints;
+
+  @Schema(description = "Number of rewards the user has", example = "2")
+  private long rewardCount;
+
+  public UserBalance() {
+  }
+
+  public UserBalance(String userId, long totalPoints, long rewardCount) {
+    this.userId = userId;
+    this.totalPoints = totalPoints;
+    this.rewardCount = rewardCount;
+  }
+
+  public static UserBalance empty(String userId) {
+    return new UserBalance(userId, 0, 0);
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public void setUserId(String userId) {
+    this.userId = userId;
+  }
+
+  public long getTotalPoints() {
+    return totalPoints;
+  }
+
+  public void setTotalPoints(long totalPoints) {
+    this.totalPoints = totalPoints;
+  }
+
+  public long getRewardCount() {
+    return rewardCount;
+  }
+
+  public void setRewardCount(long rewardCount) {
+    this.rewardCount = rewardCount;
+  }
+}
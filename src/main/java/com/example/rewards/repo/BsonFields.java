@@ -0,0 +1,68 @@
+package com.example.rewards.repo;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+
+/**
+ * Reads single fields the way {@code MappingMongoConverter} stores them, for the entity
+ * codecs. Called right after the field name has been read.
+ */
+final class BsonFields {
+
+  static final String ID = "_id";
+
+  private BsonFields() {
+  }
+
+  /**
+   * String ids that are valid ObjectIds are stored as ObjectIds, anything else as strings.
+   */
+  static String readId(BsonReader reader) {
+    return switch (reader.getCurrentBsonType()) {
+      case OBJECT_ID -> reader.readObjectId().toHexString();
+      case STRING -> reader.readString();
+      case NULL -> {
+        reader.readNull();
+        yield null;
+      }
+      default -> throw new BsonInvalidOperationException("Unsupported _id type " + reader.getCurrentBsonType());
+    };
+  }
+
+  static String readString(BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.NULL) {
+      reader.readNull();
+      return null;
+    }
+    return reader.readString();
+  }
+
+  /**
+   * Accepts any numeric type: {@code $inc} keeps the stored type, which need not be int32.
+   */
+  static int readInt(BsonReader reader) {
+    return (int) readNumber(reader);
+  }
+
+  static Long readLong(BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.NULL) {
+      reader.readNull();
+      return null;
+    }
+    return readNumber(reader);
+  }
+
+  private static long readNumber(BsonReader reader) {
+    return switch (reader.getCurrentBsonType()) {
+      case INT32 -> reader.readInt32();
+      case INT64 -> reader.readInt64();
+      case DOUBLE -> (long) reader.readDouble();
+      case NULL -> {
+        reader.readNull();
+        yield 0;
+      }
+      default -> throw new BsonInvalidOperationException("Expected a number but found " + reader.getCurrentBsonType());
+    };
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.rewards.repo;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import jdk.jfr.EventType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a {@link MongoCommandEvent} for every command of the Mongo client it is added to
+ * by {@code FlightRecorderConfig}. Nothing is kept unless a recording has the event enabled.
+ */
+public class CommandEventListener implements CommandListener {
+
+  private static final EventType EVENT_TYPE = EventType.getEventType(MongoCommandEvent.class);
+
+  // Started commands by request id, which the driver numbers across all connections
+  private final Map<Integer, MongoCommandEvent> started = new ConcurrentHashMap<>();
+  private final long thresholdNanos;
+
+  /**
+   * @param threshold commands that complete faster are not committed
+   */
+  public CommandEventListener(Duration threshold) {
+    this.thresholdNanos = threshold.toNanos();
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent command) {
+    if (!EVENT_TYPE.isEnabled()) {
+      return;
+    }
+    MongoCommandEvent event = new MongoCommandEvent();
+    event.begin();
+    event.command = command.getCommandName();
+    // Read now: the driver releases the command document after this callback
+    event.collection = collectionOf(command.getCommandName(), command.getCommand());
+    started.put(command.getRequestId(), event);
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent command) {
+    MongoCommandEvent event = started.remove(command.getRequestId());
+    if (event != null) {
+      event.documents = documentsOf(command.getResponse());
+      commit(event, command.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent command) {
+    MongoCommandEvent event = started.remove(command.getRequestId());
+    if (event != null) {
+      event.error = command.getThrowable().getClass().getSimpleName();
+      commit(event, command.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+  }
+
+  private void commit(MongoCommandEvent event, long elapsedNanos) {
+    event.end();
+    if (elapsedNanos >= thresholdNanos && event.shouldCommit()) {
+      event.commit();
+    }
+  }
+
+  /**
+   * The collection a command names as its first value ({@code {find: "rewards"}}), or in
+   * {@code collection} for {@code getMore}; null for commands on the database.
+   */
+  private static String collectionOf(String commandName, BsonDocument command) {
+    BsonValue value = command.get(commandName.equals("getMore") ? "collection" : commandName);
+    return value != null && value.isString() ? value.asString().getValue() : null;
+  }
+
+  /**
+   * The size of the returned batch of cursor commands, otherwise {@code n}: the documents
+   * inserted, matched or deleted.
+   */
+  private static long documentsOf(BsonDocument response) {
+    BsonDocument cursor = response.getDocument("cursor", null);
+    if (cursor != null) {
+      BsonValue batch = cursor.containsKey("firstBatch") ? cursor.get("firstBatch") : cursor.get("nextBatch");
+      return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+    }
+    BsonValue n = response.get("n");
+    return n != null && n.isNumber() ? n.asNumber().longValue() : 0;
+  }
+}
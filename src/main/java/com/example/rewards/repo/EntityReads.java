@@ -0,0 +1,55 @@
+package com.example.rewards.repo;
+
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+/**
+ * Runs finds whose results the driver decodes straight into entities with {@link RewardCodec}
+ * and {@link ProjectCodec}, skipping the {@code Document} and {@code MappingMongoConverter}
+ * step of {@code ReactiveMongoTemplate.find}. Queries are still mapped by the template's
+ * {@link QueryMapper}, so property names and id conversion match the derived queries.
+ */
+final class EntityReads {
+
+  private static final CodecRegistry CODECS = CodecRegistries.fromCodecs(new RewardCodec(), new ProjectCodec());
+
+  private final ReactiveMongoTemplate template;
+  private final QueryMapper queryMapper;
+  // The codecs in front of the client's registry, built from the first collection used
+  private volatile CodecRegistry registry;
+
+  EntityReads(ReactiveMongoTemplate template) {
+    this.template = template;
+    this.queryMapper = new QueryMapper(template.getConverter());
+  }
+
+  <T> Flux<T> find(Query query, Class<T> entityClass) {
+    MongoPersistentEntity<?> entity = template.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+    Document filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+    Document sort = queryMapper.getMappedSort(query.getSortObject(), entity);
+    return template.execute(entityClass, collection -> {
+      FindPublisher<T> find = collection.withCodecRegistry(registry(collection))
+        .withDocumentClass(entityClass)
+        .find(filter)
+        .sort(sort);
+      return query.isLimited() ? find.limit(query.getLimit()) : find;
+    });
+  }
+
+  private CodecRegistry registry(MongoCollection<Document> collection) {
+    CodecRegistry registry = this.registry;
+    if (registry == null) {
+      registry = CodecRegistries.fromRegistries(CODECS, collection.getCodecRegistry());
+      this.registry = registry;
+    }
+    return registry;
+  }
+}
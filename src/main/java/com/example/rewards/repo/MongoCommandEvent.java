@@ -0,0 +1,37 @@
+package com.example.rewards.repo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one command sent to MongoDB, from when the driver sends it until its reply.
+ * Committed by {@link CommandEventListener} when it took at least
+ * {@code rewards.jfr.command-threshold}.
+ *
+ * Unlike {@link RepositoryEvent} it covers every access, including the queries and bulk writes
+ * the services send through {@code ReactiveMongoTemplate}.
+ */
+@Name("com.example.rewards.MongoCommand")
+@Label("MongoDB Command")
+@Category({"Rewards", "MongoDB"})
+@Description("A command sent to MongoDB")
+@StackTrace(false)
+public class MongoCommandEvent extends Event {
+
+  @Label("Command")
+  String command;
+
+  @Label("Collection")
+  String collection;
+
+  @Label("Documents")
+  @Description("Documents returned in this batch, or written")
+  long documents;
+
+  @Label("Error")
+  String error;
+}
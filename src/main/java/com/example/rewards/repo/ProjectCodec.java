@@ -0,0 +1,53 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Project;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import static com.example.rewards.repo.BsonFields.ID;
+
+/**
+ * Decodes project documents straight into {@link Project}s. Same layout as
+ * {@code MappingMongoConverter}, and decode only; see {@link RewardCodec}.
+ */
+public class ProjectCodec implements Codec<Project> {
+
+    static final String NAME = "name";
+    static final String STATUS = "status";
+    static final String TYPE = "type";
+    static final String PROGRESS = "progress";
+    static final String VERSION = "version";
+
+    @Override
+    public Project decode(BsonReader reader, DecoderContext decoderContext) {
+        Project project = new Project();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case ID -> project.setId(BsonFields.readId(reader));
+                case NAME -> project.setName(BsonFields.readString(reader));
+                case STATUS -> project.setStatus(BsonFields.readString(reader));
+                case TYPE -> project.setType(BsonFields.readString(reader));
+                case PROGRESS -> project.setProgress(BsonFields.readInt(reader));
+                case VERSION -> project.setVersion(BsonFields.readLong(reader));
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return project;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Project project, EncoderContext encoderContext) {
+        throw new UnsupportedOperationException("Projects are written by MappingMongoConverter");
+    }
+
+    @Override
+    public Class<Project> getEncoderClass() {
+        return Project.class;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.rewards.repo;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Optional server-side filters for listing projects. Null components are not filtered on.
+ */
+public record ProjectFilter(String status, String type, Integer minProgress) {
+
+    public static final ProjectFilter NONE = new ProjectFilter(null, null, null);
+
+    public boolean isEmpty() {
+        return status == null && type == null && minProgress == null;
+    }
+
+    /**
+     * Equality filters first, then the range, matching the field order of the compound
+     * indexes declared on {@code Project}.
+     */
+    public Criteria toCriteria() {
+        Criteria criteria = new Criteria();
+        if (status != null) {
+            criteria = criteria.and("status").is(status);
+        }
+        if (type != null) {
+            criteria = criteria.and("type").is(type);
+        }
+        if (minProgress != null) {
+            criteria = criteria.and("progress").gte(minProgress);
+        }
+        return criteria;
+    }
+}
@@ -5,5 +5,5 @@ import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ProjectRepository extends ReactiveMongoRepository<Project, String> {
+public interface ProjectRepository extends ReactiveMongoRepository<Project, String>, ProjectRepositoryCustom {
 }
@@ -0,0 +1,23 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Project;
+import org.springframework.data.domain.Limit;
+import reactor.core.publisher.Flux;
+
+/**
+ * The project listings, decoded straight into entities by {@link ProjectCodec}.
+ */
+public interface ProjectRepositoryCustom {
+
+    // Keyset pagination on _id: first page, then every page after a cursor
+    Flux<Project> findAllByOrderByIdAsc(Limit limit);
+
+    Flux<Project> findByIdGreaterThanOrderByIdAsc(String after, Limit limit);
+
+    /**
+     * Projects matching {@code filter}, ordered by id and starting after the {@code after}
+     * cursor (or from the beginning when it is null). Every combination of filters is served
+     * by one of the compound indexes on {@code Project} or by the {@code _id} index.
+     */
+    Flux<Project> findByFilter(ProjectFilter filter, String after, Limit limit);
+}
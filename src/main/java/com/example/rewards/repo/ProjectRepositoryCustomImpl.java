@@ -0,0 +1,37 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Project;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+class ProjectRepositoryCustomImpl implements ProjectRepositoryCustom {
+
+    private final EntityReads reads;
+
+    ProjectRepositoryCustomImpl(ReactiveMongoTemplate template) {
+        this.reads = new EntityReads(template);
+    }
+
+    @Override
+    public Flux<Project> findAllByOrderByIdAsc(Limit limit) {
+        return findByFilter(ProjectFilter.NONE, null, limit);
+    }
+
+    @Override
+    public Flux<Project> findByIdGreaterThanOrderByIdAsc(String after, Limit limit) {
+        return findByFilter(ProjectFilter.NONE, after, limit);
+    }
+
+    @Override
+    public Flux<Project> findByFilter(ProjectFilter filter, String after, Limit limit) {
+        Criteria criteria = filter.toCriteria();
+        if (after != null) {
+            criteria = criteria.and("id").gt(after);
+        }
+        return reads.find(Query.query(criteria).with(Sort.by("id")).limit(limit), Project.class);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.rewards.repo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one call to a repository method, from subscription until the returned
+ * publisher terminates. Committed by {@link RepositoryEventInterceptor} when it took at
+ * least {@code rewards.jfr.repository-threshold}.
+ *
+ * Only Spring Data repository proxies are intercepted: what the services send through
+ * {@code ReactiveMongoTemplate} (partial updates, bulk inserts, balances) is recorded as a
+ * {@link MongoCommandEvent} only.
+ */
+@Name("com.example.rewards.Repository")
+@Label("Repository Call")
+@Category({"Rewards", "MongoDB"})
+@Description("A call to RewardRepository or ProjectRepository")
+@StackTrace(false)
+public class RepositoryEvent extends Event {
+
+  @Label("Repository")
+  String repository;
+
+  @Label("Method")
+  String method;
+
+  @Label("Entity ID")
+  String entityId;
+
+  @Label("Documents")
+  @Description("Documents emitted by the call")
+  long documents;
+
+  @Label("Error")
+  String error;
+}
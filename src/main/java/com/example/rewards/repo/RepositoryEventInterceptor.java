@@ -0,0 +1,152 @@
+package com.example.rewards.repo;
+
+import jdk.jfr.EventType;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Records a {@link RepositoryEvent} for every call to a reactive repository method. Added
+ * to the repository proxies by {@code FlightRecorderConfig}.
+ *
+ * Nothing is measured unless a recording has the event enabled, or the caller asked for the
+ * number of documents by putting a {@link LongAdder} under {@link #DOCUMENTS} into the
+ * Reactor {@code Context}.
+ */
+public class RepositoryEventInterceptor implements MethodInterceptor {
+
+  /**
+   * Reactor {@code Context} key of a {@link LongAdder} that the documents of each call are added to.
+   */
+  public static final String DOCUMENTS = RepositoryEventInterceptor.class.getName() + ".documents";
+
+  private static final EventType EVENT_TYPE = EventType.getEventType(RepositoryEvent.class);
+  private static final Set<String> BY_ID = Set.of("findById", "existsById", "deleteById");
+  private static final String CANCELLED = "cancelled";
+
+  private final String repository;
+  private final Class<?> domainType;
+  private final Function<Object, Object> idOf;
+  private final long thresholdNanos;
+
+  /**
+   * @param idOf the id of an entity of the repository's domain type
+   * @param threshold calls that complete faster are not committed
+   */
+  public RepositoryEventInterceptor(Class<?> repositoryInterface, Class<?> domainType,
+                                    Function<Object, Object> idOf, Duration threshold) {
+    this.repository = repositoryInterface.getSimpleName();
+    this.domainType = domainType;
+    this.idOf = idOf;
+    this.thresholdNanos = threshold.toNanos();
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    Object result = invocation.proceed();
+    if (result instanceof Mono<?> mono) {
+      return record(invocation, mono);
+    }
+    if (result instanceof Flux<?> flux) {
+      return record(invocation, flux);
+    }
+    return result;
+  }
+
+  private <T> Mono<T> record(MethodInvocation invocation, Mono<T> mono) {
+    return Mono.deferContextual(context -> {
+      Call call = start(invocation, context);
+      // Stopped on the value, before it is passed on, so downstream work does not count
+      return call == null ? mono : mono
+        .doOnNext(value -> {
+          call.onNext(value);
+          call.stop(null);
+        })
+        .doOnSuccess(ignored -> call.stop(null))
+        .doOnError(error -> call.stop(error.getClass().getSimpleName()))
+        .doOnCancel(() -> call.stop(CANCELLED));
+    });
+  }
+
+  private <T> Flux<T> record(MethodInvocation invocation, Flux<T> flux) {
+    return Flux.deferContextual(context -> {
+      Call call = start(invocation, context);
+      return call == null ? flux : flux
+        .doOnNext(call::onNext)
+        .doOnComplete(() -> call.stop(null))
+        .doOnError(error -> call.stop(error.getClass().getSimpleName()))
+        .doOnCancel(() -> call.stop(CANCELLED));
+    });
+  }
+
+  private Call start(MethodInvocation invocation, ContextView context) {
+    LongAdder documents = context.getOrDefault(DOCUMENTS, null);
+    if (documents == null && !EVENT_TYPE.isEnabled()) {
+      return null;
+    }
+    Object[] arguments = invocation.getArguments();
+    String method = invocation.getMethod().getName();
+    Object entityId = null;
+    if (arguments.length > 0 && BY_ID.contains(method)) {
+      entityId = arguments[0];
+    } else if (arguments.length > 0 && domainType.isInstance(arguments[0])) {
+      entityId = idOf.apply(arguments[0]);
+    }
+    return new Call(method, entityId, documents);
+  }
+
+  private final class Call {
+
+    private final RepositoryEvent event = new RepositoryEvent();
+    private final String method;
+    private final LongAdder total;
+    private final long start = System.nanoTime();
+    private Object entityId;
+    private long documents;
+    private boolean stopped;
+
+    Call(String method, Object entityId, LongAdder total) {
+      this.method = method;
+      this.entityId = entityId;
+      this.total = total;
+      event.begin();
+    }
+
+    void onNext(Object element) {
+      documents++;
+      if (entityId == null && documents == 1 && domainType.isInstance(element)) {
+        entityId = idOf.apply(element);
+      }
+    }
+
+    /**
+     * @param error the exception type, {@code cancelled}, or null when the call succeeded
+     */
+    void stop(String error) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      event.end();
+      if (total != null) {
+        total.add(documents);
+      }
+      if (System.nanoTime() - start < thresholdNanos || !event.shouldCommit()) {
+        return;
+      }
+      event.repository = repository;
+      event.method = method;
+      event.entityId = entityId == null ? null : entityId.toString();
+      event.documents = documents;
+      event.error = error;
+      event.commit();
+    }
+  }
+}
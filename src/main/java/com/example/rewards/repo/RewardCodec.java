@@ -0,0 +1,55 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Reward;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import static com.example.rewards.repo.BsonFields.ID;
+
+/**
+ * Decodes reward documents straight into {@link Reward}s, without the intermediate
+ * {@code Document} and the reflective property access of {@code MappingMongoConverter}.
+ * Reads the layout the converter writes; {@code _class} and unknown fields are skipped.
+ *
+ * Only the list reads of {@link EntityReads} use it. Writes and single-document reads still
+ * go through the converter, so the codec does not encode.
+ */
+public class RewardCodec implements Codec<Reward> {
+
+  static final String USER_ID = "userId";
+  static final String POINTS = "points";
+  static final String DESCRIPTION = "description";
+  static final String VERSION = "version";
+
+  @Override
+  public Reward decode(BsonReader reader, DecoderContext decoderContext) {
+    Reward reward = new Reward();
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case ID -> reward.setId(BsonFields.readId(reader));
+        case USER_ID -> reward.setUserId(BsonFields.readString(reader));
+        case POINTS -> reward.setPoints(BsonFields.readInt(reader));
+        case DESCRIPTION -> reward.setDescription(BsonFields.readString(reader));
+        case VERSION -> reward.setVersion(BsonFields.readLong(reader));
+        default -> reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    return reward;
+  }
+
+  @Override
+  public void encode(BsonWriter writer, Reward reward, EncoderContext encoderContext) {
+    throw new UnsupportedOperationException("Rewards are written by MappingMongoConverter");
+  }
+
+  @Override
+  public Class<Reward> getEncoderClass() {
+    return Reward.class;
+  }
+}
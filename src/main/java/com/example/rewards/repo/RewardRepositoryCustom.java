@@ -0,0 +1,23 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Reward;
+import org.springframework.data.domain.Limit;
+import reactor.core.publisher.Flux;
+
+/**
+ * The reward listings, decoded straight into entities by {@link RewardCodec}. Same queries
+ * as the derived methods they replaced.
+ */
+public interface RewardRepositoryCustom {
+  Flux<Reward> findByUserId(String userId);
+
+  // Keyset pagination on _id: first page, then every page after a cursor
+  Flux<Reward> findAllByOrderByIdAsc(Limit limit);
+
+  Flux<Reward> findByIdGreaterThanOrderByIdAsc(String after, Limit limit);
+
+  // Keyset pagination within one user's rewards, served by the {userId, _id} index
+  Flux<Reward> findByUserIdOrderByIdAsc(String userId, Limit limit);
+
+  Flux<Reward> findByUserIdAndIdGreaterThanOrderByIdAsc(String userId, String after, Limit limit);
+}
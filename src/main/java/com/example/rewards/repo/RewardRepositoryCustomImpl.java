@@ -0,0 +1,49 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Reward;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+class RewardRepositoryCustomImpl implements RewardRepositoryCustom {
+
+  private final EntityReads reads;
+
+  RewardRepositoryCustomImpl(ReactiveMongoTemplate template) {
+    this.reads = new EntityReads(template);
+  }
+
+  @Override
+  public Flux<Reward> findByUserId(String userId) {
+    return reads.find(Query.query(where("userId").is(userId)), Reward.class);
+  }
+
+  @Override
+  public Flux<Reward> findAllByOrderByIdAsc(Limit limit) {
+    return page(new Criteria(), limit);
+  }
+
+  @Override
+  public Flux<Reward> findByIdGreaterThanOrderByIdAsc(String after, Limit limit) {
+    return page(where("id").gt(after), limit);
+  }
+
+  @Override
+  public Flux<Reward> findByUserIdOrderByIdAsc(String userId, Limit limit) {
+    return page(where("userId").is(userId), limit);
+  }
+
+  @Override
+  public Flux<Reward> findByUserIdAndIdGreaterThanOrderByIdAsc(String userId, String after, Limit limit) {
+    return page(where("userId").is(userId).and("id").gt(after), limit);
+  }
+
+  private Flux<Reward> page(Criteria criteria, Limit limit) {
+    return reads.find(Query.query(criteria).with(Sort.by("id")).limit(limit), Reward.class);
+  }
+}
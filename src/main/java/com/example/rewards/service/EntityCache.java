@@ -0,0 +1,58 @@
+package com.example.rewards.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded, read-through, in-process cache of entities by ID.
+ *
+ * Entries are evicted by size (least recently/frequently used first) and by time since
+ * they were loaded. A lookup for an ID that is already loading waits for that load instead
+ * of starting another one. Missing entities are not cached. Hit, miss and eviction
+ * statistics are published as {@code cache.*} meters tagged with the cache name.
+ *
+ * A cache with a maximum size of 0 is disabled: lookups always call the loader, but
+ * concurrent lookups for the same ID still share one load.
+ */
+public class EntityCache<T> {
+
+  private final AsyncCache<String, T> cache;
+  private final SingleFlight<String, T> loads = new SingleFlight<>();
+
+  public EntityCache(String name, long maxSize, Duration ttl, MeterRegistry registry) {
+    if (maxSize <= 0) {
+      this.cache = null;
+      return;
+    }
+    this.cache = CaffeineCacheMetrics.monitor(registry, Caffeine.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .<String, T>buildAsync(), name);
+  }
+
+  public Mono<T> get(String id, Function<String, Mono<T>> loader) {
+    if (cache == null) {
+      return loads.mono(id, loader);
+    }
+    // Cancelling one subscriber must not cancel a load other lookups are waiting on
+    return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+  }
+
+  public void invalidate(String id) {
+    if (cache != null) {
+      cache.synchronous().invalidate(id);
+    }
+  }
+
+  public CacheStats stats() {
+    return cache == null ? CacheStats.empty() : cache.synchronous().stats();
+  }
+}
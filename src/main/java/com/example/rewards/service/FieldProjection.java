@@ -0,0 +1,87 @@
+package com.example.rewards.service;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs reads with a Mongo field projection for sparse fieldsets ({@code ?fields=}).
+ *
+ * Only the selected fields (and {@code _id}) are read from the collection and sent by the
+ * server. Results are returned as raw documents turned into maps rather than entities, so
+ * unselected fields are absent from the JSON instead of showing up as null or 0.
+ * Field names are the entities' property names, which are also their stored names.
+ */
+final class FieldProjection {
+
+  private final ReactiveMongoTemplate template;
+  private final Class<?> entityType;
+
+  FieldProjection(ReactiveMongoTemplate template, Class<?> entityType) {
+    this.template = template;
+    this.entityType = entityType;
+  }
+
+  /**
+   * Up to {@code limit} documents ordered by id, starting after the {@code after} cursor
+   * (or from the beginning when it is null).
+   */
+  Flux<Map<String, Object>> findPage(String after, int limit, Set<String> fields) {
+    return findPage(new Criteria(), after, limit, fields);
+  }
+
+  /**
+   * Like {@link #findPage(String, int, Set)}, restricted to documents matching {@code filter}.
+   * The filter uses stored field names since it is not run through the mapping layer.
+   */
+  Flux<Map<String, Object>> findPage(Criteria filter, String after, int limit, Set<String> fields) {
+    Criteria criteria = after == null ? filter : filter.and("_id").gt(idValue(after));
+    return find(Query.query(criteria).with(Sort.by("_id")).limit(limit), fields);
+  }
+
+  Mono<Map<String, Object>> findById(String id, Set<String> fields) {
+    return find(Query.query(where("_id").is(idValue(id))), fields).next();
+  }
+
+  Flux<Map<String, Object>> findBy(Criteria criteria, Set<String> fields) {
+    return find(Query.query(criteria), fields);
+  }
+
+  Flux<Map<String, Object>> find(Query query, Set<String> fields) {
+    // an empty include list would project nothing away, so ask for the id alone
+    query.fields().include(fields.isEmpty() ? new String[] {"_id"} : fields.toArray(String[]::new));
+    return template.find(query, Document.class, template.getCollectionName(entityType))
+      .map(document -> toMap(document, fields));
+  }
+
+  /**
+   * Ids that look like ObjectIds are stored as ObjectIds by the mapping layer; raw queries
+   * have to do the same conversion to match them.
+   */
+  private static Object idValue(String id) {
+    return ObjectId.isValid(id) ? new ObjectId(id) : id;
+  }
+
+  private static Map<String, Object> toMap(Document document, Set<String> fields) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    Object id = document.get("_id");
+    result.put("id", id == null ? null : id.toString());
+    for (String field : fields) {
+      if (document.containsKey(field)) {
+        result.put(field, document.get(field));
+      }
+    }
+    return result;
+  }
+}
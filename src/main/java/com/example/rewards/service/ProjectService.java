@@ -1,45 +1,264 @@
 package com.example.rewards.service;
 
 import com.example.rewards.model.Project;
+import com.example.rewards.model.ProjectStats;
+import com.example.rewards.repo.ProjectFilter;
 import com.example.rewards.repo.ProjectRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.bucket;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.facet;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
 @Service
-public class ProjectService {
+public class ProjectService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectService.class);
+
+    // Lower bounds of the progress histogram buckets; the last one holds finished projects only
+    private static final List<Integer> PROGRESS_BOUNDARIES = List.of(0, 25, 50, 75, 100, 101);
+    private static final String OUT_OF_RANGE_BUCKET = "other";
 
     private final ProjectRepository repository;
+    private final ReactiveMongoTemplate template;
+    private final EntityCache<Project> cache;
+    private final FieldProjection projection;
+    private final RefreshingSnapshot<ProjectStats> stats;
+    private final Disposable statsRefresher;
 
-    public ProjectService(ProjectRepository repository) {
+    public ProjectService(ProjectRepository repository, ReactiveMongoTemplate template, EntityCache<Project> cache,
+                          @Value("${rewards.projects.stats.refresh-interval:30s}") Duration statsRefreshInterval,
+                          @Value("${rewards.projects.stats.idle-after:5m}") Duration statsIdleAfter) {
         this.repository = repository;
+        this.template = template;
+        this.cache = cache;
+        this.projection = new FieldProjection(template, Project.class);
+        this.stats = new RefreshingSnapshot<>(this::computeStats, statsIdleAfter);
+        // Picks up changes made by other instances, which do not invalidate this one's snapshot
+        this.statsRefresher = statsRefreshInterval.isZero() || statsRefreshInterval.isNegative()
+                ? Disposables.disposed()
+                : Flux.interval(statsRefreshInterval, statsRefreshInterval)
+                        .onBackpressureDrop()
+                        .concatMap(tick -> stats.refresh()
+                                .onErrorResume(e -> {
+                                    log.warn("Refreshing project statistics failed", e);
+                                    return Mono.empty();
+                                }), 1)
+                        .subscribe();
     }
 
     public Flux<Project> findAll() {
         return repository.findAll();
     }
 
+    /**
+     * Returns up to {@code limit} projects ordered by id, starting after the {@code after} cursor
+     * (or from the beginning when it is null).
+     */
+    public Flux<Project> findPage(String after, int limit) {
+        return after == null
+                ? repository.findAllByOrderByIdAsc(Limit.of(limit))
+                : repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+    }
+
+    /**
+     * Like {@link #findPage(String, int)}, restricted to projects matching {@code filter}.
+     */
+    public Flux<Project> findPage(ProjectFilter filter, String after, int limit) {
+        return filter.isEmpty() ? findPage(after, limit) : repository.findByFilter(filter, after, Limit.of(limit));
+    }
+
     public Mono<Project> findById(String id) {
-        return repository.findById(id);
+        return cache.get(id, repository::findById);
+    }
+
+    /**
+     * Sparse variants of the reads above: only {@code fields} (and the id) are read from Mongo
+     * and returned, bypassing the entity cache.
+     */
+    public Flux<Map<String, Object>> findPage(ProjectFilter filter, String after, int limit, Set<String> fields) {
+        return projection.findPage(filter.toCriteria(), after, limit, fields);
+    }
+
+    public Mono<Map<String, Object>> findById(String id, Set<String> fields) {
+        return projection.findById(id, fields);
     }
 
     public Mono<Project> create(Mono<Project> projectMono) {
-        return projectMono.flatMap(repository::save);
+        return projectMono.flatMap(repository::save)
+                .doOnNext(saved -> stats.invalidate());
+    }
+
+    /**
+     * Counts per status and type, average progress and a progress histogram, computed by one
+     * {@code $facet} aggregation. The result is kept in memory until a project is created,
+     * changed or deleted through this service, and recomputed every
+     * {@code rewards.projects.stats.refresh-interval} while it is being read, that is until it
+     * has gone unread for {@code rewards.projects.stats.idle-after}.
+     */
+    public Mono<ProjectStats> stats() {
+        return stats.get();
+    }
+
+    /**
+     * Replaces the project's fields with those of the incoming project in one atomic
+     * {@code findAndModify}.
+     *
+     * @param expectedVersion when not null, the update only applies to this version of the project
+     */
+    public Mono<Project> update(String id, Mono<Project> projectMono, Long expectedVersion) {
+        return projectMono.flatMap(incoming -> {
+            Map<String, Object> changes = new LinkedHashMap<>();
+            changes.put("name", incoming.getName());
+            changes.put("status", incoming.getStatus());
+            changes.put("type", incoming.getType());
+            changes.put("progress", incoming.getProgress());
+            return patch(id, changes, expectedVersion);
+        });
     }
 
-    public Mono<Project> update(String id, Mono<Project> projectMono) {
-        return repository.findById(id)
-                .zipWith(projectMono, (existing, incoming) -> {
-                    existing.setName(incoming.getName());
-                    existing.setStatus(incoming.getStatus());
-                    existing.setType(incoming.getType());
-                    existing.setProgress(incoming.getProgress());
-                    return existing;
+    /**
+     * Sets the given fields with a single {@code findAndModify $set} and returns the updated project.
+     *
+     * @param expectedVersion when not null, the update only applies to this version of the project
+     * @return the updated project, or empty when it does not exist
+     * @throws OptimisticLockingFailureException (signalled) when the project exists at another version
+     */
+    public Mono<Project> patch(String id, Map<String, Object> changes, Long expectedVersion) {
+        Update update = new Update().inc("version", 1);
+        changes.forEach(update::set);
+        return template.findAndModify(versioned(id, expectedVersion), update,
+                        FindAndModifyOptions.options().returnNew(true), Project.class)
+                .doOnNext(saved -> {
+                    cache.invalidate(id);
+                    stats.invalidate();
                 })
-                .flatMap(repository::save);
+                .switchIfEmpty(versionConflictIfExists(id, expectedVersion));
+    }
+
+    /**
+     * @param expectedVersion when not null, the project is only deleted at this version
+     */
+    public Mono<Void> delete(String id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return repository.deleteById(id)
+                    .doOnSuccess(ignored -> {
+                        cache.invalidate(id);
+                        stats.invalidate();
+                    });
+        }
+        return template.findAndRemove(versioned(id, expectedVersion), Project.class)
+                .doOnNext(removed -> {
+                    cache.invalidate(id);
+                    stats.invalidate();
+                })
+                .switchIfEmpty(versionConflictIfExists(id, expectedVersion))
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        statsRefresher.dispose();
+    }
+
+    private Mono<ProjectStats> computeStats() {
+        Aggregation aggregation = newAggregation(
+                facet(group().count().as("total").avg("progress").as("averageProgress")).as("summary")
+                        .and(group("status").count().as("count")).as("byStatus")
+                        .and(group("type").count().as("count")).as("byType")
+                        .and(bucket("progress")
+                                .withBoundaries(PROGRESS_BOUNDARIES.toArray())
+                                .withDefaultBucket(OUT_OF_RANGE_BUCKET)
+                                .andOutputCount().as("count")).as("progress"));
+        return template.aggregate(aggregation, Project.class, Document.class)
+                .next()
+                .map(ProjectService::toStats);
+    }
+
+    private static ProjectStats toStats(Document result) {
+        List<Document> summary = result.getList("summary", Document.class);
+        long total = summary.isEmpty() ? 0 : ((Number) summary.get(0).get("total")).longValue();
+        Number average = summary.isEmpty() ? null : (Number) summary.get(0).get("averageProgress");
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < PROGRESS_BOUNDARIES.size() - 1; i++) {
+            histogram.put(bucketLabel(i), 0L);
+        }
+        for (Document bucket : result.getList("progress", Document.class)) {
+            Object lowerBound = bucket.get("_id");
+            String label = lowerBound instanceof Number number
+                    ? bucketLabel(PROGRESS_BOUNDARIES.indexOf(number.intValue()))
+                    : OUT_OF_RANGE_BUCKET;
+            histogram.put(label, ((Number) bucket.get("count")).longValue());
+        }
+
+        return new ProjectStats(total,
+                counts(result.getList("byStatus", Document.class)),
+                counts(result.getList("byType", Document.class)),
+                average == null ? 0 : average.doubleValue(),
+                histogram,
+                Instant.now());
+    }
+
+    private static String bucketLabel(int index) {
+        int from = PROGRESS_BOUNDARIES.get(index);
+        int to = PROGRESS_BOUNDARIES.get(index + 1) - 1;
+        return from == to ? String.valueOf(from) : from + "-" + to;
+    }
+
+    private static Map<String, Long> counts(List<Document> groups) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Document group : groups) {
+            counts.put(String.valueOf(group.get("_id")), ((Number) group.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    private static Query versioned(String id, Long expectedVersion) {
+        Criteria criteria = where("_id").is(id);
+        return query(expectedVersion == null ? criteria : criteria.and("version").is(expectedVersion));
     }
 
-    public Mono<Void> delete(String id) {
-        return repository.deleteById(id);
+    /**
+     * When a versioned write matched nothing, tells a missing project (empty) apart from a
+     * stale version (error).
+     */
+    private Mono<Project> versionConflictIfExists(String id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return template.exists(query(where("_id").is(id)), Project.class)
+                .flatMap(exists -> exists
+                        ? Mono.error(new OptimisticLockingFailureException(
+                                "Project " + id + " is not at version " + expectedVersion))
+                        : Mono.empty());
     }
 }
@@ -0,0 +1,82 @@
+package com.example.rewards.service;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A single expensive value (such as an aggregation result) computed once and then served
+ * from memory until it is invalidated.
+ *
+ * Writers call {@link #invalidate()}; the next {@link #get()} recomputes the value, and
+ * concurrent readers share that one computation. {@link #refresh()} recomputes in the
+ * background so readers keep getting the previous value meanwhile. A value whose
+ * computation overlapped an invalidation is kept but counts as stale, so the next read
+ * computes it again.
+ *
+ * Background refreshes stop once the value has not been read for the idle window; the value is
+ * then dropped, and the next read computes it again.
+ */
+class RefreshingSnapshot<T> {
+
+  private static final String KEY = "snapshot";
+
+  private final Supplier<Mono<T>> loader;
+  private final long idleNanos;
+  private final LongSupplier nanoTime;
+  private final AtomicLong revision = new AtomicLong();
+  private final SingleFlight<String, T> loads = new SingleFlight<>();
+  private volatile Snapshot<T> current;
+  private volatile long lastReadAt;
+
+  RefreshingSnapshot(Supplier<Mono<T>> loader, Duration idleAfter) {
+    this(loader, idleAfter, System::nanoTime);
+  }
+
+  RefreshingSnapshot(Supplier<Mono<T>> loader, Duration idleAfter, LongSupplier nanoTime) {
+    this.loader = loader;
+    this.idleNanos = idleAfter.toNanos();
+    this.nanoTime = nanoTime;
+  }
+
+  Mono<T> get() {
+    lastReadAt = nanoTime.getAsLong();
+    Snapshot<T> snapshot = current;
+    if (snapshot != null && snapshot.revision() == revision.get()) {
+      return Mono.just(snapshot.value());
+    }
+    return load();
+  }
+
+  /**
+   * Recomputes the value if it has been read within the idle window; otherwise there is nobody
+   * to keep it fresh for, and the value is dropped instead.
+   */
+  Mono<T> refresh() {
+    if (current == null) {
+      return Mono.empty();
+    }
+    if (nanoTime.getAsLong() - lastReadAt > idleNanos) {
+      current = null;
+      return Mono.empty();
+    }
+    return load();
+  }
+
+  void invalidate() {
+    revision.incrementAndGet();
+  }
+
+  private Mono<T> load() {
+    return loads.mono(KEY, key -> {
+      long startedAt = revision.get();
+      return loader.get().doOnNext(value -> current = new Snapshot<>(value, startedAt));
+    });
+  }
+
+  private record Snapshot<T>(T value, long revision) {
+  }
+}
@@ -1,48 +1,322 @@
 package com.example.rewards.service;
 
+import com.example.rewards.model.BatchItemResult;
 import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
 import com.example.rewards.repo.RewardRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @Service
 public class RewardService {
   private final RewardRepository repository;
+  private final ReactiveMongoTemplate template;
+  private final UserBalanceService balances;
+  private final RewardWriteBuffer writeBuffer;
+  private final EntityCache<Reward> cache;
+  private final SingleFlight<String, List<Reward>> userQueries = new SingleFlight<>();
+  private final FieldProjection projection;
+
+  private final int batchChunkSize;
+  private final int batchConcurrency;
 
-  public RewardService(RewardRepository repository) {
+  public RewardService(RewardRepository repository, ReactiveMongoTemplate template, UserBalanceService balances,
+                       RewardWriteBuffer writeBuffer, EntityCache<Reward> cache,
+                       @Value("${rewards.batch.chunk-size:500}") int batchChunkSize,
+                       @Value("${rewards.batch.concurrency:2}") int batchConcurrency) {
     this.repository = repository;
+    this.template = template;
+    this.balances = balances;
+    this.writeBuffer = writeBuffer;
+    this.cache = cache;
+    this.projection = new FieldProjection(template, Reward.class);
+    this.batchChunkSize = batchChunkSize;
+    this.batchConcurrency = batchConcurrency;
   }
 
   public Flux<Reward> findAll() {
     return repository.findAll();
   }
 
+  /**
+   * Returns up to {@code limit} rewards ordered by id, starting after the {@code after} cursor
+   * (or from the beginning when it is null).
+   */
+  public Flux<Reward> findPage(String after, int limit) {
+    return after == null
+      ? repository.findAllByOrderByIdAsc(Limit.of(limit))
+      : repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit));
+  }
+
   public Mono<Reward> findById(String id) {
-    return repository.findById(id);
+    return cache.get(id, repository::findById);
+  }
+
+  /**
+   * Sparse variants of the reads above: only {@code fields} (and the id) are read from Mongo
+   * and returned. They bypass the entity cache and request coalescing, which hold full rewards.
+   */
+  public Flux<Map<String, Object>> findAll(Set<String> fields) {
+    return projection.find(new Query(), fields);
+  }
+
+  public Flux<Map<String, Object>> findPage(String after, int limit, Set<String> fields) {
+    return projection.findPage(after, limit, fields);
+  }
+
+  public Mono<Map<String, Object>> findById(String id, Set<String> fields) {
+    return projection.findById(id, fields);
   }
 
+  public Flux<Map<String, Object>> findByUser(String userId, Set<String> fields) {
+    return projection.findBy(where("userId").is(userId), fields);
+  }
+
+  public Flux<Map<String, Object>> findPageByUser(String userId, String after, int limit, Set<String> fields) {
+    return projection.findPage(where("userId").is(userId), after, limit, fields);
+  }
+
+  /**
+   * The user's rewards as one list: concurrent requests for the same user share one query
+   * and all receive its full result.
+   */
   public Flux<Reward> findByUser(String userId) {
+    return userQueries.mono(userId, id -> repository.findByUserId(id).collectList())
+      .flatMapIterable(rewards -> rewards);
+  }
+
+  /**
+   * The user's rewards as they are read from the cursor, for streamed responses: not shared,
+   * so a slow client backpressures its own query and a disconnected one cancels it.
+   */
+  public Flux<Reward> streamByUser(String userId) {
     return repository.findByUserId(userId);
   }
 
+  /**
+   * One page of the user's rewards ordered by id, starting after the {@code after} cursor
+   * (or from the beginning when it is null).
+   */
+  public Flux<Reward> findPageByUser(String userId, String after, int limit) {
+    return after == null
+      ? repository.findByUserIdOrderByIdAsc(userId, Limit.of(limit))
+      : repository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, after, Limit.of(limit));
+  }
+
+  /**
+   * Total points and reward count for a user, read from the materialized
+   * {@code user_balances} collection with a single point lookup.
+   */
+  public Mono<UserBalance> balanceFor(String userId) {
+    return balances.find(userId);
+  }
+
+  public Flux<UserBalance> balancesFor(List<String> userIds) {
+    return balances.findAll(userIds);
+  }
+
+  /**
+   * Saves a reward and adds it to the user's balance. With write coalescing enabled the save
+   * goes through {@link RewardWriteBuffer}, which batches concurrent creates into one insert.
+   */
   public Mono<Reward> create(Mono<Reward> rewardMono) {
-    return rewardMono.flatMap(repository::save);
+    return rewardMono.flatMap(reward -> writeBuffer.isEnabled()
+      ? writeBuffer.submit(reward)
+      : repository.save(reward)
+        .flatMap(saved -> balances.applyDelta(saved.getUserId(), saved.getPoints(), 1).thenReturn(saved)));
+  }
+
+  /**
+   * Validates and inserts a stream of rewards in chunks of {@code rewards.batch.chunk-size},
+   * each written with one unordered bulk write. Up to {@code rewards.batch.concurrency}
+   * chunks are in flight at once; results are emitted in input order, one per element.
+   *
+   * @param validator returns the reward, or fails with {@link IllegalArgumentException} when it is invalid
+   */
+  public Flux<BatchItemResult> createAll(Flux<Reward> rewards, Function<Reward, Mono<Reward>> validator) {
+    return rewards.index()
+      .buffer(batchChunkSize)
+      .flatMapSequential(chunk -> insertChunk(chunk, validator), batchConcurrency);
+  }
+
+  private Flux<BatchItemResult> insertChunk(List<Tuple2<Long, Reward>> chunk, Function<Reward, Mono<Reward>> validator) {
+    return Flux.defer(() -> {
+      Map<Long, BatchItemResult> invalid = new HashMap<>();
+      List<Tuple2<Long, Reward>> valid = new ArrayList<>();
+      return Flux.fromIterable(chunk)
+        .concatMap(item -> validator.apply(item.getT2())
+          .doOnNext(reward -> {
+            // Assign ids up front: bulk inserts do not write generated ids back to the entity,
+            // nor initialize the version the way save and insert do
+            reward.setId(new ObjectId().toHexString());
+            reward.setVersion(0L);
+            valid.add(Tuples.of(item.getT1(), reward));
+          })
+          .onErrorResume(IllegalArgumentException.class, e -> {
+            invalid.put(item.getT1(), BatchItemResult.invalid(item.getT1(), e.getMessage()));
+            return Mono.empty();
+          }))
+        .then(Mono.defer(() -> UnorderedInsert.insert(template, valid.stream().map(Tuple2::getT2).toList())))
+        .flatMapMany(failures -> {
+          List<Reward> inserted = new ArrayList<>();
+          Map<Long, BatchItemResult> results = new HashMap<>(invalid);
+          for (int i = 0; i < valid.size(); i++) {
+            Tuple2<Long, Reward> item = valid.get(i);
+            String failure = failures.get(i);
+            if (failure == null) {
+              inserted.add(item.getT2());
+              results.put(item.getT1(), BatchItemResult.created(item.getT1(), item.getT2().getId()));
+            } else {
+              results.put(item.getT1(), BatchItemResult.failed(item.getT1(), failure));
+            }
+          }
+          return balances.applyInserted(inserted)
+            .thenMany(Flux.fromIterable(chunk).map(item -> results.get(item.getT1())));
+        });
+    });
+  }
+
+  /**
+   * Replaces the reward's fields with those of the incoming reward in one atomic
+   * {@code findAndModify}.
+   *
+   * @param expectedVersion when not null, the update only applies to this version of the reward
+   */
+  public Mono<Reward> update(String id, Mono<Reward> rewardMono, Long expectedVersion) {
+    return rewardMono.flatMap(incoming -> {
+      Map<String, Object> changes = new LinkedHashMap<>();
+      changes.put("userId", incoming.getUserId());
+      changes.put("points", incoming.getPoints());
+      changes.put("description", incoming.getDescription());
+      return patch(id, changes, expectedVersion);
+    });
   }
 
-  public Mono<Reward> update(String id, Mono<Reward> rewardMono) {
-    return repository.findById(id)
-      .zipWith(rewardMono, (existing, incoming) -> {
-        existing.setUserId(incoming.getUserId());
-        existing.setPoints(incoming.getPoints());
-        existing.setDescription(incoming.getDescription());
-        return existing;
+  /**
+   * Sets the given fields ({@code userId}, {@code points}, {@code description}) with a single
+   * {@code findAndModify $set}. The previous document is returned by Mongo so the balance
+   * deltas are exact even under concurrent writers; the updated document is derived from it.
+   *
+   * @param expectedVersion when not null, the update only applies to this version of the reward
+   * @return the updated reward, or empty when it does not exist
+   * @throws OptimisticLockingFailureException (signalled) when the reward exists at another version
+   */
+  public Mono<Reward> patch(String id, Map<String, Object> changes, Long expectedVersion) {
+    Update update = new Update().inc("version", 1);
+    changes.forEach(update::set);
+    return template.findAndModify(versioned(id, expectedVersion), update, FindAndModifyOptions.options().returnNew(false), Reward.class)
+      .flatMap(previous -> {
+        Reward current = withChanges(previous, changes);
+        cache.invalidate(id);
+        return moveBalance(previous, current).thenReturn(current);
       })
-      .flatMap(repository::save);
+      .switchIfEmpty(versionConflictIfExists(id, expectedVersion));
   }
 
-  public Mono<Void> delete(String id) {
-    return repository.deleteById(id);
+  /**
+   * Adds {@code amount} (which may be negative) to the reward's points with a single
+   * {@code findAndModify $inc}. Fails with {@link IllegalArgumentException} when the result
+   * would be negative or overflow an int, which Mongo would silently widen to a long.
+   *
+   * @return the updated reward, or empty when it does not exist
+   */
+  public Mono<Reward> incrementPoints(String id, int amount) {
+    Criteria criteria = where("_id").is(id);
+    // In long: -Integer.MIN_VALUE overflows an int
+    if (amount < 0) {
+      criteria = criteria.and("points").gte(-(long) amount);
+    } else if (amount > 0) {
+      criteria = criteria.and("points").lte((long) Integer.MAX_VALUE - amount);
+    }
+    Update update = new Update().inc("points", amount).inc("version", 1);
+    return template.findAndModify(query(criteria), update, FindAndModifyOptions.options().returnNew(true), Reward.class)
+      .flatMap(updated -> {
+        cache.invalidate(id);
+        return balances.applyDelta(updated.getUserId(), amount, 0).thenReturn(updated);
+      })
+      .switchIfEmpty(Mono.defer(() -> amount != 0
+        ? template.exists(query(where("_id").is(id)), Reward.class)
+          .flatMap(exists -> exists
+            ? Mono.error(new IllegalArgumentException(amount < 0
+              ? "Reward " + id + " has fewer than " + -(long) amount + " points"
+              : "Reward " + id + " cannot exceed " + Integer.MAX_VALUE + " points"))
+            : Mono.empty())
+        : Mono.empty()));
   }
-}
 
+  /**
+   * @param expectedVersion when not null, the reward is only deleted at this version
+   */
+  public Mono<Void> delete(String id, Long expectedVersion) {
+    return template.findAndRemove(versioned(id, expectedVersion), Reward.class)
+      .doOnNext(removed -> cache.invalidate(id))
+      .flatMap(removed -> balances.applyDelta(removed.getUserId(), -removed.getPoints(), -1).thenReturn(removed))
+      .switchIfEmpty(versionConflictIfExists(id, expectedVersion))
+      .then();
+  }
+
+  private static Query versioned(String id, Long expectedVersion) {
+    Criteria criteria = where("_id").is(id);
+    return query(expectedVersion == null ? criteria : criteria.and("version").is(expectedVersion));
+  }
+
+  /**
+   * When a versioned write matched nothing, tells a missing reward (empty) apart from a
+   * stale version (error).
+   */
+  private Mono<Reward> versionConflictIfExists(String id, Long expectedVersion) {
+    if (expectedVersion == null) {
+      return Mono.empty();
+    }
+    return template.exists(query(where("_id").is(id)), Reward.class)
+      .flatMap(exists -> exists
+        ? Mono.error(new OptimisticLockingFailureException("Reward " + id + " is not at version " + expectedVersion))
+        : Mono.empty());
+  }
+
+  private static Reward withChanges(Reward previous, Map<String, Object> changes) {
+    Reward current = new Reward(previous.getId(), previous.getUserId(), previous.getPoints(), previous.getDescription());
+    current.setVersion(previous.getVersion() == null ? 1 : previous.getVersion() + 1);
+    changes.forEach((field, value) -> {
+      switch (field) {
+        case "userId" -> current.setUserId((String) value);
+        case "points" -> current.setPoints((Integer) value);
+        case "description" -> current.setDescription((String) value);
+        default -> throw new IllegalArgumentException("Unknown reward field: " + field);
+      }
+    });
+    return current;
+  }
+
+  private Mono<Void> moveBalance(Reward previous, Reward current) {
+    if (Objects.equals(previous.getUserId(), current.getUserId())) {
+      return balances.applyDelta(current.getUserId(), current.getPoints() - previous.getPoints(), 0);
+    }
+    return balances.applyDelta(previous.getUserId(), -previous.getPoints(), -1)
+      .then(balances.applyDelta(current.getUserId(), current.getPoints(), 1));
+  }
+}
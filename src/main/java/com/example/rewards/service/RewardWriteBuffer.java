@@ -0,0 +1,240 @@
+package com.example.rewards.service;
+
+import com.example.rewards.model.Reward;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces single reward creates into unordered bulk inserts.
+ *
+ * Enabled with {@code rewards.create.coalescing.enabled}. Submitted rewards are queued and
+ * flushed as one insert when {@code max-batch-size} rewards are waiting or the oldest has
+ * waited {@code max-wait}, whichever comes first. Each caller's {@code Mono} completes with
+ * its own saved document, or with the error of its own write: one failing document does not
+ * fail the others of its batch, which are written and added to the balances.
+ *
+ * At most {@code capacity} rewards wait to be written; submits beyond that fail immediately
+ * with 503 Service Unavailable and a {@code Retry-After} rather than growing memory without
+ * bound. Queued rewards are flushed on shutdown.
+ */
+@Component
+public class RewardWriteBuffer implements DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(RewardWriteBuffer.class);
+  // A full buffer drains within a few flushes of max-wait
+  private static final String RETRY_AFTER_SECONDS = "1";
+
+  private final ReactiveMongoTemplate template;
+  private final UserBalanceService balances;
+  private final boolean enabled;
+  private final int capacity;
+  private final Duration shutdownTimeout;
+
+  private final Sinks.Many<Pending> queue;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final CountDownLatch drained = new CountDownLatch(1);
+
+  private final DistributionSummary batchSize;
+  private final Timer queueWait;
+  private final Counter rejected;
+
+  @Autowired
+  public RewardWriteBuffer(ReactiveMongoTemplate template,
+                           UserBalanceService balances,
+                           ObjectProvider<MeterRegistry> meterRegistry,
+                           @Value("${rewards.create.coalescing.enabled:false}") boolean enabled,
+                           @Value("${rewards.create.coalescing.max-batch-size:100}") int maxBatchSize,
+                           @Value("${rewards.create.coalescing.max-wait:5ms}") Duration maxWait,
+                           @Value("${rewards.create.coalescing.capacity:10000}") int capacity,
+                           @Value("${rewards.create.coalescing.flush-concurrency:2}") int flushConcurrency,
+                           @Value("${rewards.create.coalescing.shutdown-timeout:10s}") Duration shutdownTimeout) {
+    this(template, balances, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+      enabled, maxBatchSize, maxWait, capacity, flushConcurrency, shutdownTimeout);
+  }
+
+  public RewardWriteBuffer(ReactiveMongoTemplate template,
+                           UserBalanceService balances,
+                           MeterRegistry registry,
+                           boolean enabled,
+                           int maxBatchSize,
+                           Duration maxWait,
+                           int capacity,
+                           int flushConcurrency,
+                           Duration shutdownTimeout) {
+    this.template = template;
+    this.balances = balances;
+    this.enabled = enabled;
+    this.capacity = capacity;
+    this.shutdownTimeout = shutdownTimeout;
+    // Emits are serialized by synchronizing on the sink rather than by the sink itself, whose
+    // FAIL_NON_SERIALIZED would leave concurrent submits on event-loop threads to spin. The
+    // capacity is enforced exactly by the queued count; bounded queues round it up to a power of 2
+    this.queue = Sinks.unsafe().many().unicast().onBackpressureBuffer(Queues.<Pending>unbounded().get());
+
+    this.batchSize = DistributionSummary.builder("rewards.create.coalescing.batch.size")
+      .description("Rewards written per insertMany")
+      .register(registry);
+    this.queueWait = Timer.builder("rewards.create.coalescing.queue.wait")
+      .description("Time a reward waited in the buffer before its batch was flushed")
+      .register(registry);
+    this.rejected = Counter.builder("rewards.create.coalescing.rejected")
+      .description("Rewards rejected because the buffer was full or closed")
+      .register(registry);
+    Gauge.builder("rewards.create.coalescing.queue.size", queued, AtomicInteger::get)
+      .description("Rewards waiting to be flushed")
+      .register(registry);
+
+    if (enabled) {
+      queue.asFlux()
+        .bufferTimeout(maxBatchSize, maxWait, true)
+        .flatMap(this::flush, flushConcurrency)
+        .doFinally(signal -> drained.countDown())
+        .subscribe();
+      log.info("Reward write coalescing enabled: max-batch-size={}, max-wait={}, capacity={}",
+        maxBatchSize, maxWait, capacity);
+    } else {
+      drained.countDown();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues a reward for the next batch insert.
+   *
+   * @return the saved reward once its batch has been written
+   * @throws ResponseStatusException (signalled) 503 when the buffer is full or closed
+   */
+  public Mono<Reward> submit(Reward reward) {
+    return Mono.defer(() -> {
+      Pending pending = new Pending(reward, Sinks.one(), System.nanoTime());
+      // Counted before the emit, so that a flush of this reward never sees it uncounted
+      if (queued.incrementAndGet() > capacity) {
+        return reject("Reward write buffer is full");
+      }
+      Sinks.EmitResult result;
+      synchronized (queue) {
+        result = queue.tryEmitNext(pending);
+      }
+      if (result.isFailure()) {
+        return reject("Reward write buffer is closed");
+      }
+      return pending.saved().asMono();
+    });
+  }
+
+  private Mono<Reward> reject(String reason) {
+    queued.decrementAndGet();
+    rejected.increment();
+    return Mono.error(new Overloaded(reason));
+  }
+
+  private Mono<Void> flush(List<Pending> batch) {
+    long now = System.nanoTime();
+    queued.addAndGet(-batch.size());
+    batchSize.record(batch.size());
+    batch.forEach(pending -> queueWait.record(now - pending.enqueuedNanos(), TimeUnit.NANOSECONDS));
+    List<Reward> rewards = batch.stream().map(Pending::reward).toList();
+    rewards.forEach(reward -> {
+      reward.setId(new ObjectId().toHexString());
+      reward.setVersion(0L);
+    });
+    return UnorderedInsert.insert(template, rewards)
+      .flatMap(failures -> {
+        if (!failures.isEmpty()) {
+          log.warn("{} of {} coalesced reward inserts failed, e.g. {}", failures.size(), batch.size(),
+            failures.values().iterator().next());
+        }
+        List<Reward> inserted = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+          String failure = failures.get(i);
+          if (failure == null) {
+            inserted.add(rewards.get(i));
+          } else {
+            batch.get(i).saved().tryEmitError(new DataIntegrityViolationException(failure));
+          }
+        }
+        return balances.applyInserted(inserted).then(Mono.fromRunnable(() -> {
+          for (int i = 0; i < batch.size(); i++) {
+            if (!failures.containsKey(i)) {
+              batch.get(i).saved().tryEmitValue(rewards.get(i));
+            }
+          }
+        }));
+      })
+      .onErrorResume(e -> {
+        log.warn("Coalesced insert of {} rewards failed: {}", batch.size(), e.getMessage());
+        // Entries already completed ignore this
+        batch.forEach(pending -> pending.saved().tryEmitError(e));
+        return Mono.empty();
+      })
+      .then();
+  }
+
+  /**
+   * Stops accepting rewards and waits for the queued ones to be written.
+   */
+  @Override
+  public void destroy() throws InterruptedException {
+    if (!enabled) {
+      return;
+    }
+    synchronized (queue) {
+      queue.tryEmitComplete();
+    }
+    if (!drained.await(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+      log.warn("Reward write buffer did not drain within {}; {} rewards may not have been written",
+        shutdownTimeout, queued.get());
+    }
+  }
+
+  private record Pending(Reward reward, Sinks.One<Reward> saved, long enqueuedNanos) {
+  }
+
+  /**
+   * A full or closed buffer: an overload the client can retry, not a server error.
+   */
+  static final class Overloaded extends ResponseStatusException {
+
+    private final HttpHeaders headers = new HttpHeaders();
+
+    Overloaded(String reason) {
+      super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+      headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.example.rewards.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent identical reads. While a query for a key is in flight, further
+ * subscribers for the same key join it and receive the same result instead of issuing
+ * their own query. Once the query terminates the key is released, so the next read goes
+ * to the database again; nothing is cached beyond the lifetime of the query.
+ *
+ * A query keeps running when a subscriber cancels, since other subscribers may be waiting on it.
+ * Results are therefore single values (a multi-document result is shared as one collected list);
+ * streams that rely on backpressure and cancellation must not be coalesced.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, Mono<V>> monos = new ConcurrentHashMap<>();
+
+  public Mono<V> mono(K key, Function<K, Mono<V>> query) {
+    return Mono.defer(() -> monos.computeIfAbsent(key, k -> query.apply(k)
+      .doFinally(signal -> monos.remove(k))
+      .cache()));
+  }
+
+  int inFlight() {
+    return monos.size();
+  }
+}
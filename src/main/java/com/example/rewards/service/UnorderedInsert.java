@@ -0,0 +1,45 @@
+package com.example.rewards.service;
+
+import com.example.rewards.model.Reward;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts rewards with one unordered bulk write, which writes every document it can instead
+ * of stopping at the first failure (a duplicate key, say) like an ordered {@code insertMany}.
+ *
+ * Bulk inserts do not write generated ids back to the entities, nor initialize their version
+ * the way save and insert do, so callers assign both before inserting.
+ */
+final class UnorderedInsert {
+
+  private UnorderedInsert() {
+  }
+
+  /**
+   * @return the error message for each position of {@code rewards} that was not written
+   */
+  static Mono<Map<Integer, String>> insert(ReactiveMongoTemplate template, List<Reward> rewards) {
+    if (rewards.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+    return template.bulkOps(BulkOperations.BulkMode.UNORDERED, Reward.class)
+      .insert(rewards)
+      .execute()
+      .<Map<Integer, String>>map(result -> Map.of())
+      .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(failuresByIndex(e.getWriteErrors())))
+      .onErrorResume(BulkOperationException.class, e -> Mono.just(failuresByIndex(e.getErrors())));
+  }
+
+  private static Map<Integer, String> failuresByIndex(List<BulkWriteError> errors) {
+    return errors.stream().collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage, (a, b) -> a));
+  }
+}
@@ -0,0 +1,151 @@
+package com.example.rewards.service;
+
+import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
+import com.mongodb.client.result.DeleteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Maintains the {@code user_balances} collection: one document per user holding the
+ * running total of points and number of rewards, keyed by user ID.
+ *
+ * Reward writes apply {@code $inc} deltas, which are atomic per balance document. The
+ * reward write and the balance update are separate operations, so a crash between them
+ * can leave a balance off by one write; {@link #rebuild()} recomputes every balance from
+ * the {@code rewards} collection to repair such drift.
+ */
+@Service
+public class UserBalanceService {
+
+  private static final Logger log = LoggerFactory.getLogger(UserBalanceService.class);
+
+  private final ReactiveMongoTemplate template;
+  private final int rebuildChunkSize;
+  private final int rebuildParallelism;
+
+  public UserBalanceService(ReactiveMongoTemplate template,
+                            @Value("${rewards.balances.rebuild.chunk-size:500}") int rebuildChunkSize,
+                            @Value("${rewards.balances.rebuild.parallelism:4}") int rebuildParallelism) {
+    this.template = template;
+    this.rebuildChunkSize = rebuildChunkSize;
+    this.rebuildParallelism = rebuildParallelism;
+  }
+
+  public Mono<UserBalance> find(String userId) {
+    return template.findById(userId, UserBalance.class)
+      .defaultIfEmpty(UserBalance.empty(userId));
+  }
+
+  /**
+   * Balances for several users with a single {@code _id $in} lookup, in the order the ids
+   * were given. Users without a balance document get a zero balance.
+   */
+  public Flux<UserBalance> findAll(List<String> userIds) {
+    return template.find(query(where("_id").in(userIds)), UserBalance.class)
+      .collectMap(UserBalance::getUserId)
+      .flatMapIterable(found -> userIds.stream()
+        .distinct()
+        .map(userId -> found.getOrDefault(userId, UserBalance.empty(userId)))
+        .toList());
+  }
+
+  /**
+   * Atomically adds {@code points} and {@code rewards} to the user's balance, creating it if needed.
+   * Does nothing for a reward without a user, which has no balance.
+   */
+  public Mono<Void> applyDelta(String userId, long points, long rewards) {
+    if (userId == null || points == 0 && rewards == 0) {
+      return Mono.empty();
+    }
+    Update update = new Update().inc("totalPoints", points).inc("rewardCount", rewards);
+    return template.upsert(query(where("_id").is(userId)), update, UserBalance.class).then();
+  }
+
+  /**
+   * Applies the deltas for a set of newly inserted rewards, one upsert per distinct user,
+   * sent to Mongo as a single unordered bulk write.
+   */
+  public Mono<Void> applyInserted(Collection<Reward> inserted) {
+    if (inserted.isEmpty()) {
+      return Mono.empty();
+    }
+    Map<String, List<Reward>> byUser = inserted.stream().collect(Collectors.groupingBy(Reward::getUserId));
+    ReactiveBulkOperations bulk = template.bulkOps(BulkOperations.BulkMode.UNORDERED, UserBalance.class);
+    byUser.forEach((userId, rewards) -> bulk.upsert(query(where("_id").is(userId)), new Update()
+      .inc("totalPoints", rewards.stream().mapToLong(Reward::getPoints).sum())
+      .inc("rewardCount", (long) rewards.size())));
+    return bulk.execute().then();
+  }
+
+  /**
+   * Recomputes every balance from the {@code rewards} collection, and removes the balances of
+   * users who no longer have any reward (they read as zero, see {@link #find}). Users are
+   * processed in chunks of {@code rewards.balances.rebuild.chunk-size}, with up to
+   * {@code rewards.balances.rebuild.parallelism} chunks aggregated at once.
+   *
+   * Writes that land while a rebuild is running may be overwritten, so run it at startup
+   * or during maintenance.
+   *
+   * @return the number of balances written
+   */
+  public Mono<Long> rebuild() {
+    long started = System.nanoTime();
+    return template.findDistinct(new Query(), "userId", Reward.class, String.class)
+      .buffer(rebuildChunkSize)
+      .flatMap(this::aggregate, rebuildParallelism)
+      .flatMap(template::save, rebuildParallelism)
+      .count()
+      .zipWhen(written -> removeOrphans())
+      .doOnSuccess(counts -> log.info("Rebuilt {} user balances and removed {} without rewards in {} ms",
+        counts.getT1(), counts.getT2(), (System.nanoTime() - started) / 1_000_000))
+      .map(Tuple2::getT1);
+  }
+
+  /**
+   * Deletes the balance documents whose user has no reward left, checking the existing
+   * balances chunk by chunk against the users that still have rewards.
+   */
+  private Mono<Long> removeOrphans() {
+    return template.findDistinct(new Query(), "_id", UserBalance.class, String.class)
+      .buffer(rebuildChunkSize)
+      .flatMap(userIds -> template.findDistinct(query(where("userId").in(userIds)), "userId", Reward.class, String.class)
+        .collect(Collectors.toSet())
+        .flatMap(withRewards -> {
+          List<String> orphans = userIds.stream().filter(userId -> !withRewards.contains(userId)).toList();
+          return orphans.isEmpty()
+            ? Mono.just(0L)
+            : template.remove(query(where("_id").in(orphans)), UserBalance.class).map(DeleteResult::getDeletedCount);
+        }), rebuildParallelism)
+      .reduce(0L, Long::sum);
+  }
+
+  private Flux<UserBalance> aggregate(Collection<String> userIds) {
+    Aggregation aggregation = newAggregation(
+      match(where("userId").in(userIds)),
+      group("userId").sum("points").as("totalPoints").count().as("rewardCount"));
+    return template.aggregate(aggregation, Reward.class, UserBalance.class);
+  }
+}
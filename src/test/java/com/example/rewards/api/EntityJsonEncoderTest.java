@@ -0,0 +1,101 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class EntityJsonEncoderTest {
+
+  private final EntityJsonEncoder encoder = new EntityJsonEncoder();
+  // The mapper WebFlux's default Jackson encoder uses
+  private final ObjectMapper jackson = Jackson2ObjectMapperBuilder.json().build();
+
+  @Test
+  void writesTheSameJsonAsJackson() throws Exception {
+    Reward reward = new Reward("507f1f77bcf86cd799439011", "user-1", -42, "Quote \" backslash \\ tab \t bell \u0007 é € 😀");
+    reward.setVersion(Long.MAX_VALUE);
+    Reward empty = new Reward();
+    Project project = new Project("Project Alpha", "Running", "Web App", 100);
+    project.setId("p-1");
+    project.setVersion(0L);
+
+    assertEquals(jackson.writeValueAsString(reward), encode(reward));
+    assertEquals(jackson.writeValueAsString(empty), encode(empty));
+    assertEquals(jackson.writeValueAsString(project), encode(project));
+    assertEquals(jackson.writeValueAsString(List.of(reward, empty)), encode(List.of(reward, empty)));
+    assertEquals("[]", encode(List.of()));
+  }
+
+  @Test
+  void streamsJsonArraysAndNdjson() throws Exception {
+    Reward first = new Reward("1", "user-1", 10, "a");
+    Reward second = new Reward("2", "user-1", 20, null);
+
+    assertEquals(jackson.writeValueAsString(List.of(first, second)),
+      join(encoder.encode(Flux.just(first, second), DefaultDataBufferFactory.sharedInstance,
+        ResolvableType.forClass(Reward.class), MediaType.APPLICATION_JSON, Map.of())));
+    assertEquals("[]", join(encoder.encode(Flux.empty(), DefaultDataBufferFactory.sharedInstance,
+      ResolvableType.forClass(Reward.class), MediaType.APPLICATION_JSON, Map.of())));
+    assertEquals(jackson.writeValueAsString(first) + "\n" + jackson.writeValueAsString(second) + "\n",
+      join(encoder.encode(Flux.just(first, second), DefaultDataBufferFactory.sharedInstance,
+        ResolvableType.forClass(Reward.class), MediaType.APPLICATION_NDJSON, Map.of())));
+  }
+
+  @Test
+  void isPickedBeforeJacksonOnlyForRewardsAndProjects() {
+    ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+    configurer.customCodecs().register(encoder);
+
+    assertInstanceOf(EntityJsonEncoder.class, firstWriter(configurer, ResolvableType.forClass(Reward.class)));
+    assertInstanceOf(EntityJsonEncoder.class,
+      firstWriter(configurer, ResolvableType.forClassWithGenerics(List.class, Project.class)));
+    assertFalse(encoder.canEncode(ResolvableType.forClassWithGenerics(List.class, Map.class), MediaType.APPLICATION_JSON));
+    assertFalse(encoder.canEncode(ResolvableType.forClass(Reward.class), MediaType.APPLICATION_XML));
+  }
+
+  private String encode(Object value) {
+    DataBuffer buffer = encoder.encodeValue(value, DefaultDataBufferFactory.sharedInstance,
+      ResolvableType.forInstance(value), MediaType.APPLICATION_JSON, Map.of());
+    try {
+      return buffer.toString(StandardCharsets.UTF_8);
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private static String join(Flux<DataBuffer> buffers) {
+    return DataBufferUtils.join(buffers)
+      .map(buffer -> {
+        String json = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return json;
+      })
+      .block();
+  }
+
+  private static Object firstWriter(ServerCodecConfigurer configurer, ResolvableType type) {
+    return configurer.getWriters().stream()
+      .filter(writer -> writer.canWrite(type, MediaType.APPLICATION_JSON))
+      .findFirst()
+      .map(writer -> writer instanceof EncoderHttpMessageWriter<?> encoding ? encoding.getEncoder() : writer)
+      .orElseThrow();
+  }
+}
@@ -0,0 +1,124 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The hand-written mapping must stay wire compatible with {@code rewards.proto}, so it is
+ * checked against protobuf's own parser and builder for a descriptor of the same messages.
+ */
+class EntityProtobufTest {
+
+  private static Descriptor rewardMessage;
+  private static Descriptor rewardListMessage;
+
+  @BeforeAll
+  static void describeSchema() throws Exception {
+    FileDescriptorProto file = FileDescriptorProto.newBuilder()
+      .setName("rewards.proto")
+      .setPackage("com.example.rewards")
+      .addMessageType(DescriptorProto.newBuilder()
+        .setName("Reward")
+        .addField(field("id", 1, FieldDescriptorProto.Type.TYPE_STRING))
+        .addField(field("user_id", 2, FieldDescriptorProto.Type.TYPE_STRING))
+        .addField(field("points", 3, FieldDescriptorProto.Type.TYPE_INT32))
+        .addField(field("description", 4, FieldDescriptorProto.Type.TYPE_STRING))
+        .addField(field("version", 5, FieldDescriptorProto.Type.TYPE_INT64)))
+      .addMessageType(DescriptorProto.newBuilder()
+        .setName("RewardList")
+        .addField(field("rewards", 1, FieldDescriptorProto.Type.TYPE_MESSAGE)
+          .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED)
+          .setTypeName(".com.example.rewards.Reward")))
+      .build();
+    FileDescriptor descriptor = FileDescriptor.buildFrom(file, new FileDescriptor[0]);
+    rewardMessage = descriptor.findMessageTypeByName("Reward");
+    rewardListMessage = descriptor.findMessageTypeByName("RewardList");
+  }
+
+  @Test
+  void rewardsAreReadableByProtobuf() throws Exception {
+    Reward reward = new Reward("507f1f77bcf86cd799439011", "user-1", -5, "é € 😀");
+    reward.setVersion(Long.MAX_VALUE);
+
+    DynamicMessage message = DynamicMessage.parseFrom(rewardMessage, EntityProtobuf.write(reward));
+
+    assertEquals("507f1f77bcf86cd799439011", message.getField(rewardMessage.findFieldByName("id")));
+    assertEquals("user-1", message.getField(rewardMessage.findFieldByName("user_id")));
+    assertEquals(-5, message.getField(rewardMessage.findFieldByName("points")));
+    assertEquals("é € 😀", message.getField(rewardMessage.findFieldByName("description")));
+    assertEquals(Long.MAX_VALUE, message.getField(rewardMessage.findFieldByName("version")));
+
+    DynamicMessage empty = DynamicMessage.parseFrom(rewardMessage, EntityProtobuf.write(new Reward("user-2", 0, null)));
+    assertFalse(empty.hasField(rewardMessage.findFieldByName("points")));
+    assertFalse(empty.hasField(rewardMessage.findFieldByName("description")));
+    assertFalse(empty.hasField(rewardMessage.findFieldByName("version")));
+  }
+
+  @Test
+  void readsMessagesBuiltByProtobufAndSkipsUnknownFields() throws Exception {
+    byte[] bytes = DynamicMessage.newBuilder(rewardMessage)
+      .setField(rewardMessage.findFieldByName("user_id"), "user-1")
+      .setField(rewardMessage.findFieldByName("points"), 150)
+      .setUnknownFields(UnknownFieldSet.newBuilder()
+        .addField(42, UnknownFieldSet.Field.newBuilder().addLengthDelimited(com.google.protobuf.ByteString.copyFromUtf8("later")).build())
+        .build())
+      .build()
+      .toByteArray();
+
+    Reward reward = EntityProtobuf.read(bytes, Reward.class);
+
+    assertNull(reward.getId());
+    assertEquals("user-1", reward.getUserId());
+    assertEquals(150, reward.getPoints());
+    assertNull(reward.getVersion());
+  }
+
+  @Test
+  void listsAreTheConcatenationOfTheirElements() throws Exception {
+    Reward first = new Reward("1", "user-1", 10, "a");
+    Reward second = new Reward("2", "user-1", 20, null);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(EntityProtobuf.writeElement(first));
+    stream.write(EntityProtobuf.writeElement(second));
+
+    byte[] list = EntityProtobuf.write(List.of(first, second));
+
+    assertArrayEquals(stream.toByteArray(), list);
+    assertEquals(2, DynamicMessage.parseFrom(rewardListMessage, list)
+      .getRepeatedFieldCount(rewardListMessage.findFieldByName("rewards")));
+    assertEquals(List.of("1", "2"), EntityProtobuf.readList(list, Reward.class).stream().map(Reward::getId).toList());
+    assertEquals(0, EntityProtobuf.write(List.of()).length);
+
+    Project project = new Project("Project Alpha", "Running", "Web App", 75);
+    project.setVersion(1L);
+    Project read = EntityProtobuf.readList(EntityProtobuf.write(List.of(project)), Project.class).get(0);
+    assertEquals("Project Alpha", read.getName());
+    assertEquals(75, read.getProgress());
+    assertEquals(1L, read.getVersion());
+  }
+
+  private static FieldDescriptorProto.Builder field(String name, int number, FieldDescriptorProto.Type type) {
+    return FieldDescriptorProto.newBuilder()
+      .setName(name)
+      .setNumber(number)
+      .setType(type)
+      .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+  }
+}
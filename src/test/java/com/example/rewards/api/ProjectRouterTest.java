@@ -0,0 +1,169 @@
+package com.example.rewards.api;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.repo.ProjectFilter;
+import com.example.rewards.repo.ProjectRepository;
+import com.example.rewards.service.EntityCache;
+import com.example.rewards.service.ProjectService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProjectRouterTest {
+
+    @Mock
+    private ProjectRepository repository;
+
+    @Mock
+    private ReactiveMongoTemplate template;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setup() {
+        var cache = new EntityCache<Project>("projects", 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        var handler = new ProjectHandler(new ProjectService(repository, template, cache, Duration.ZERO, Duration.ZERO));
+        client = WebTestClient.bindToRouterFunction(new ProjectRouter().projectRoutes(handler, new RouteMetrics(new SimpleMeterRegistry())))
+                .handlerStrategies(HandlerStrategies.builder()
+                        .codecs(codecs -> {
+                            codecs.customCodecs().register(new EntityJsonEncoder());
+                            codecs.customCodecs().register(new EntityProtobufEncoder());
+                            codecs.customCodecs().register(new EntityProtobufDecoder());
+                        })
+                        .exceptionHandler(new GlobalErrorHandler())
+                        .build())
+                .build();
+    }
+
+    @Test
+    void getAllFiltersOnTheServer() {
+        Project alpha = new Project("Project Alpha", "Running", "Web App", 75);
+        alpha.setId("1");
+        ProjectFilter filter = new ProjectFilter("Running", "Web App", 50);
+        when(repository.findByFilter(eq(filter), eq(null), any(Limit.class))).thenReturn(Flux.just(alpha));
+        client.get()
+                .uri("/api/projects?status=Running&type=Web App&minProgress=50")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("Project Alpha");
+        verify(repository, never()).findAllByOrderByIdAsc(any(Limit.class));
+    }
+
+    @Test
+    void getAllAndCreateSpeakProtobuf() throws IOException {
+        Project alpha = new Project("Project Alpha", "Running", "Web App", 75);
+        alpha.setId("1");
+        Project beta = new Project("Project Beta", "Pending", "Mobile", 0);
+        beta.setId("2");
+        when(repository.findAllByOrderByIdAsc(any(Limit.class))).thenReturn(Flux.just(alpha, beta));
+        byte[] page = client.get()
+                .uri("/api/projects")
+                .accept(Representations.APPLICATION_PROTOBUF)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(Representations.APPLICATION_PROTOBUF)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        List<Project> projects = EntityProtobuf.readList(page, Project.class);
+        assertEquals(List.of("Project Alpha", "Project Beta"), projects.stream().map(Project::getName).toList());
+        assertEquals(0, projects.get(1).getProgress());
+
+        when(repository.save(any(Project.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        byte[] created = client.post()
+                .uri("/api/projects")
+                .contentType(Representations.APPLICATION_PROTOBUF)
+                .accept(Representations.APPLICATION_PROTOBUF)
+                .bodyValue(EntityProtobuf.write(new Project("Project Gamma", "Running", "Web App", 10)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals("Project Gamma", EntityProtobuf.read(created, Project.class).getName());
+    }
+
+    @Test
+    void statsAreComputedOnceUntilAProjectChanges() {
+        Document result = new Document("summary", List.of(new Document("total", 2).append("averageProgress", 50.0)))
+                .append("byStatus", List.of(new Document("_id", "Running").append("count", 2)))
+                .append("byType", List.of(new Document("_id", "Web App").append("count", 2)))
+                .append("progress", List.of(new Document("_id", 25).append("count", 1),
+                        new Document("_id", 75).append("count", 1)));
+        when(template.aggregate(any(Aggregation.class), eq(Project.class), eq(Document.class)))
+                .thenReturn(Flux.just(result));
+        for (int i = 0; i < 3; i++) {
+            client.get()
+                    .uri("/api/projects/stats")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.total").isEqualTo(2)
+                    .jsonPath("$.byStatus.Running").isEqualTo(2)
+                    .jsonPath("$.averageProgress").isEqualTo(50.0)
+                    .jsonPath("$.progressHistogram['0-24']").isEqualTo(0)
+                    .jsonPath("$.progressHistogram['75-99']").isEqualTo(1);
+        }
+        verify(template, times(1)).aggregate(any(Aggregation.class), eq(Project.class), eq(Document.class));
+
+        when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Project.class)))
+                .thenReturn(Mono.just(new Project("Project Alpha", "Ended", "Web App", 100)));
+        client.patch()
+                .uri("/api/projects/1")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("status", "Ended"))
+                .exchange()
+                .expectStatus().isOk();
+        client.get()
+                .uri("/api/projects/stats")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk();
+        verify(template, times(2)).aggregate(any(Aggregation.class), eq(Project.class), eq(Document.class));
+    }
+
+    @Test
+    void getAllRejectsOutOfRangeMinProgress() {
+        client.get()
+                .uri("/api/projects?minProgress=150")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("minProgress must be between 0 and 100");
+    }
+}
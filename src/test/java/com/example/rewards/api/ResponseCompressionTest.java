@@ -0,0 +1,184 @@
+package com.example.rewards.api;
+
+import com.github.luben.zstd.Zstd;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ResponseCompressionTest {
+
+  private static final String LARGE = "[" + "{\"userId\":\"user-1\",\"points\":100},".repeat(100) + "{}]";
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final AtomicReference<String> projects = new AtomicReference<>(LARGE);
+
+  @Test
+  void compressesLargeBodiesOnly() throws IOException {
+    WebTestClient client = client(Map.of());
+
+    byte[] gzip = client.get().uri("/api/rewards")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+      .expectBody(byte[].class).returnResult().getResponseBody();
+    assertEquals(LARGE, new String(new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes(), StandardCharsets.UTF_8));
+
+    byte[] deflate = client.get().uri("/api/rewards")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0.5, deflate")
+      .exchange()
+      .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "deflate")
+      .expectBody(byte[].class).returnResult().getResponseBody();
+    assertEquals(LARGE, new String(new InflaterInputStream(new ByteArrayInputStream(deflate)).readAllBytes(), StandardCharsets.UTF_8));
+
+    client.get().uri("/api/rewards/1")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .exchange()
+      .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    client.get().uri("/api/rewards")
+      .exchange()
+      .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+      .expectBody(String.class).isEqualTo(LARGE);
+  }
+
+  @Test
+  void leavesStreamsAndDisabledRoutesAlone() {
+    WebTestClient client = client(Map.of("/api/rewards", new CompressionProperties.Route(false, null, false)));
+
+    client.get().uri("/api/rewards")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .exchange()
+      .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+      .expectBody(String.class).isEqualTo(LARGE);
+    client.get().uri("/api/rewards/stream")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .exchange()
+      .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON);
+  }
+
+  @Test
+  void reusesCompressedBodiesWhileTheyAreUnchanged() throws IOException {
+    WebTestClient client = client(Map.of("/api/projects", new CompressionProperties.Route(null, null, true)));
+
+    byte[] first = getProjects(client);
+    byte[] second = getProjects(client);
+    projects.set(LARGE.replace("user-1", "user-2"));
+    byte[] changed = getProjects(client);
+
+    assertEquals(1, registry.get(ResponseCompression.CACHE).tag("result", "hit").counter().count());
+    assertEquals(2, registry.get(ResponseCompression.CACHE).tag("result", "miss").counter().count());
+    assertEquals(new String(first, StandardCharsets.ISO_8859_1), new String(second, StandardCharsets.ISO_8859_1));
+    assertEquals(projects.get(), new String(new GZIPInputStream(new ByteArrayInputStream(changed)).readAllBytes(), StandardCharsets.UTF_8));
+    assertEquals(3 * LARGE.length(), registry.get(ResponseCompression.BYTES).tag("encoding", "gzip").tag("body", "original").counter().count());
+  }
+
+  @Test
+  void tagsCompressedBodiesWithTheirCoding() {
+    WebTestClient client = client(Map.of());
+
+    client.get().uri("/api/projects/1")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING)
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3-gzip\"");
+    client.get().uri("/api/projects/1")
+      .exchange()
+      .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"");
+
+    client.get().uri("/api/projects/1")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .header(HttpHeaders.IF_NONE_MATCH, "\"3-gzip\"")
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3-gzip\"");
+    // A gzip tag does not stand for the deflate body
+    client.get().uri("/api/projects/1")
+      .header(HttpHeaders.ACCEPT_ENCODING, "deflate")
+      .header(HttpHeaders.IF_NONE_MATCH, "\"3-gzip\"")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3-deflate\"");
+
+    client.put().uri("/api/projects/1")
+      .header(HttpHeaders.IF_MATCH, "\"3-cbor-gzip\"")
+      .exchange()
+      .expectBody(String.class).isEqualTo("3");
+  }
+
+  @Test
+  void negotiatesByQualityThenServerPreference() {
+    List<ContentCoding> offered = List.of(ContentCoding.ZSTD, ContentCoding.GZIP, ContentCoding.DEFLATE);
+
+    assertEquals(ContentCoding.ZSTD, ContentCoding.negotiate(List.of("gzip, deflate, br, zstd"), offered));
+    assertEquals(ContentCoding.GZIP, ContentCoding.negotiate(List.of("zstd;q=0.1", "gzip"), offered));
+    assertEquals(ContentCoding.GZIP, ContentCoding.negotiate(List.of("*;q=0.5, gzip"), List.of(ContentCoding.DEFLATE, ContentCoding.GZIP)));
+    assertEquals(ContentCoding.DEFLATE, ContentCoding.negotiate(List.of("*"), List.of(ContentCoding.DEFLATE, ContentCoding.GZIP)));
+    assertNull(ContentCoding.negotiate(List.of("identity, gzip;q=0"), offered));
+    assertNull(ContentCoding.negotiate(null, offered));
+  }
+
+  @Test
+  void zstdWhereItsLibraryLoads() {
+    assumeTrue(ContentCoding.ZSTD.available());
+    byte[] body = LARGE.getBytes(StandardCharsets.UTF_8);
+
+    byte[] compressed = ContentCoding.ZSTD.compress(body);
+
+    assertEquals(LARGE, new String(Zstd.decompress(compressed, body.length), StandardCharsets.UTF_8));
+  }
+
+  private byte[] getProjects(WebTestClient client) {
+    return client.get().uri("/api/projects")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+      .exchange()
+      .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+      .expectBody(byte[].class).returnResult().getResponseBody();
+  }
+
+  private WebTestClient client(Map<String, CompressionProperties.Route> routes) {
+    CompressionProperties properties = new CompressionProperties(DataSize.ofKilobytes(1), List.of("gzip", "deflate"),
+      List.of("application/json"), DataSize.ofKilobytes(64), routes);
+    RouterFunction<ServerResponse> router = RouterFunctions.route()
+      .GET("/api/rewards", request -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(LARGE))
+      .GET("/api/rewards/stream", request -> ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+        .body(Flux.just(LARGE, LARGE), String.class))
+      .GET("/api/rewards/{id}", request -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue("{\"id\":\"1\"}"))
+      .GET("/api/projects", request -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(projects.get()))
+      .GET("/api/projects/{id}", request -> EntityTags.okOrNotModified(request, LARGE, 3L))
+      .PUT("/api/projects/{id}", request -> ServerResponse.ok().contentType(MediaType.TEXT_PLAIN)
+        .bodyValue(String.valueOf(EntityTags.ifMatch(request))))
+      .build();
+    return WebTestClient.bindToRouterFunction(router)
+      .handlerStrategies(HandlerStrategies.builder()
+        .webFilter(new ResponseCompression(properties, registry))
+        .build())
+      .build();
+  }
+}
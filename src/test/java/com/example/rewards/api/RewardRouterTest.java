@@ -1,20 +1,62 @@
 package com.example.rewards.api;
 
+import com.example.rewards.model.BatchItemResult;
 import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
 import com.example.rewards.repo.RewardRepository;
+import com.example.rewards.service.EntityCache;
+import com.example.rewards.service.RewardWriteBuffer;
+import com.example.rewards.service.UserBalanceService;
+import com.mongodb.bulk.BulkWriteResult;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,33 +65,516 @@ class RewardRouterTest {
   @Mock
   private RewardRepository repository;
 
+  @Mock
+  private ReactiveMongoTemplate template;
+
   private WebTestClient client;
 
+  private SimpleMeterRegistry registry;
+
   private Reward reward;
 
+  private UserBalanceService balances;
+
   @BeforeEach
   void setup() {
     reward = new Reward("1", "user-1", 100, "welcome bonus");
-    var service = new com.example.rewards.service.RewardService(repository);
+    balances = new UserBalanceService(template, 500, 4);
+    registry = new SimpleMeterRegistry();
+    client = client(new RewardWriteBuffer(template, balances, new SimpleMeterRegistry(),
+      false, 100, Duration.ofMillis(5), 10_000, 2, Duration.ofSeconds(10)));
+  }
+
+  private WebTestClient client(RewardWriteBuffer writeBuffer) {
+    var cache = new EntityCache<Reward>("rewards", 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    var service = new com.example.rewards.service.RewardService(repository, template, balances, writeBuffer, cache, 500, 2);
     var handler = new RewardHandler(service, jakarta.validation.Validation.buildDefaultValidatorFactory().getValidator());
-    RouterFunction<ServerResponse> routes = new RewardRouter().routes(handler);
-    client = WebTestClient.bindToRouterFunction(routes).build();
+    RouterFunction<ServerResponse> routes = new RewardRouter().routes(handler, new RouteMetrics(registry));
+    return WebTestClient.bindToRouterFunction(routes)
+      .handlerStrategies(HandlerStrategies.builder()
+        .codecs(codecs -> {
+          codecs.customCodecs().register(new EntityJsonEncoder());
+          codecs.customCodecs().register(new EntityProtobufEncoder());
+          codecs.customCodecs().register(new EntityProtobufDecoder());
+          codecs.customCodecs().register(new BufferingCborEncoder());
+          codecs.customCodecs().register(new BufferingCborDecoder());
+        })
+        .webFilter(new ServerTiming())
+        .webFilter(new HandlerEventFilter(Duration.ZERO))
+        .exceptionHandler(new GlobalErrorHandler())
+        .build())
+      .build();
   }
 
   @Test
-  void getAll() {
-    when(repository.findAll()).thenReturn(Flux.just(reward));
+  void getAllWithoutParametersReturnsOnlyTheFirstPage() {
+    when(repository.findAllByOrderByIdAsc(any(Limit.class))).thenReturn(Flux.just(reward));
     client.get()
       .uri("/api/rewards")
       .exchange()
       .expectStatus().isOk()
       .expectBodyList(Reward.class)
       .hasSize(1);
+    // 100 rewards and one more to tell whether there is a next page
+    verify(repository).findAllByOrderByIdAsc(Limit.of(101));
+  }
+
+  @Test
+  void getAllReturnsNextCursorWhenMorePagesExist() {
+    String after = "507f1f77bcf86cd799439011";
+    Reward second = new Reward("507f1f77bcf86cd799439013", "user-2", 250, "referral bonus");
+    Reward third = new Reward("507f1f77bcf86cd799439014", "user-3", 75, "feedback reward");
+    when(repository.findByIdGreaterThanOrderByIdAsc(eq(after), eq(Limit.of(2))))
+      .thenReturn(Flux.just(second, third));
+    client.get()
+      .uri("/api/rewards?limit=1&after=" + after)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(CursorPage.NEXT_CURSOR_HEADER, second.getId())
+      .expectBodyList(Reward.class)
+      .hasSize(1);
+  }
+
+  @Test
+  void getAllWithFieldsProjectsInMongo() {
+    ObjectId id = new ObjectId();
+    when(template.getCollectionName(Reward.class)).thenReturn("rewards");
+    when(template.find(any(Query.class), eq(Document.class), eq("rewards")))
+      .thenReturn(Flux.just(new Document("_id", id).append("userId", "user-1").append("points", 100)));
+    client.get()
+      .uri("/api/rewards?fields=userId,points")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$[0].id").isEqualTo(id.toHexString())
+      .jsonPath("$[0].points").isEqualTo(100)
+      .jsonPath("$[0].description").doesNotExist();
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(template).find(query.capture(), eq(Document.class), eq("rewards"));
+    assertEquals(new Document("userId", 1).append("points", 1), query.getValue().getFieldsObject());
+    verify(repository, never()).findAllByOrderByIdAsc(any(Limit.class));
+  }
+
+  @Test
+  void getAllRejectsUnknownFields() {
+    client.get()
+      .uri("/api/rewards?fields=userId,secret")
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectHeader().contentType(MediaType.APPLICATION_JSON)
+      .expectBody()
+      .jsonPath("$.error").isEqualTo("Unknown field: secret");
+  }
+
+  @Test
+  void rejectsInvalidInputWithBadRequest() {
+    client.get()
+      .uri("/api/rewards?limit=0")
+      .exchange()
+      .expectStatus().isBadRequest();
+    client.get()
+      .uri("/api/rewards/balances")
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody()
+      .jsonPath("$.error").isEqualTo("At least one userId is required");
+    client.put()
+      .uri("/api/rewards/1")
+      .header(HttpHeaders.IF_MATCH, "W/\"1\"")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("userId", "user-1", "points", 10))
+      .exchange()
+      .expectStatus().isBadRequest();
+    client.post()
+      .uri("/api/rewards")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{\"userId\":")
+      .exchange()
+      .expectStatus().isBadRequest();
+  }
+
+  @Test
+  void recordsLatencyAndStatusPerRoutePattern() {
+    when(repository.findById("1")).thenReturn(Mono.just(reward));
+    when(repository.findById("2")).thenReturn(Mono.empty());
+    client.get().uri("/api/rewards/1").exchange().expectStatus().isOk().expectBody().returnResult();
+    client.get().uri("/api/rewards/2").exchange().expectStatus().isNotFound().expectBody().returnResult();
+
+    String[] route = {"method", "GET", "route", "/api/rewards/{id}"};
+    assertEquals(2, registry.get(RouteMetrics.LATENCY).tags(route).timer().count());
+    assertEquals(1, registry.get(RouteMetrics.RESPONSES).tags(route).tag("status", "200").counter().count());
+    assertEquals(1, registry.get(RouteMetrics.RESPONSES).tags(route).tag("status", "404").counter().count());
+    assertEquals(0, registry.get(RouteMetrics.IN_FLIGHT).tags(route).gauge().value());
+  }
+
+  @Test
+  void recordsTheErrorStatusOfFailedRequests() {
+    client.get().uri("/api/rewards?limit=0").exchange().expectStatus().isBadRequest().expectBody().returnResult();
+
+    String[] route = {"method", "GET", "route", "/api/rewards"};
+    assertEquals(1, registry.get(RouteMetrics.RESPONSES).tags(route).tag("status", "400").counter().count());
+    assertEquals(0, registry.get(RouteMetrics.IN_FLIGHT).tags(route).gauge().value());
+  }
+
+  @Test
+  void getByIdIsServedFromCacheAfterFirstLoad() {
+    when(repository.findById("1")).thenReturn(Mono.just(reward));
+    for (int i = 0; i < 2; i++) {
+      client.get()
+        .uri("/api/rewards/1")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.userId").isEqualTo("user-1");
+    }
+    verify(repository, times(1)).findById("1");
+  }
+
+  @Test
+  void getByIdAnswersMatchingIfNoneMatchWithNotModified() {
+    reward.setVersion(3L);
+    when(repository.findById("1")).thenReturn(Mono.just(reward));
+    client.get()
+      .uri("/api/rewards/1")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"");
+    client.get()
+      .uri("/api/rewards/1")
+      .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectBody().isEmpty();
+  }
+
+  @Test
+  void getByIdRevalidatesEachRepresentationWithItsOwnTag() {
+    reward.setVersion(3L);
+    when(repository.findById("1")).thenReturn(Mono.just(reward));
+    // The JSON tag does not stand for the CBOR bytes
+    client.get()
+      .uri("/api/rewards/1")
+      .accept(MediaType.APPLICATION_CBOR)
+      .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3-cbor\"");
+    client.get()
+      .uri("/api/rewards/1")
+      .accept(MediaType.APPLICATION_CBOR)
+      .header(HttpHeaders.IF_NONE_MATCH, "\"3\", \"3-cbor\"")
+      .exchange()
+      .expectStatus().isNotModified();
+  }
+
+  @Test
+  void getByIdNegotiatesCborAndProtobuf() throws IOException {
+    reward.setVersion(3L);
+    when(repository.findById("1")).thenReturn(Mono.just(reward));
+    byte[] cbor = client.get()
+      .uri("/api/rewards/1")
+      .accept(MediaType.APPLICATION_CBOR)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3-cbor\"")
+      .expectBody(byte[].class)
+      .returnResult()
+      .getResponseBody();
+    assertEquals("user-1", new CBORMapper().readValue(cbor, Reward.class).getUserId());
+
+    byte[] protobuf = client.get()
+      .uri("/api/rewards/1")
+      .header(HttpHeaders.ACCEPT, "application/json;q=0.5, application/x-protobuf")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(Representations.APPLICATION_PROTOBUF)
+      .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3-pb\"")
+      .expectBody(byte[].class)
+      .returnResult()
+      .getResponseBody();
+    Reward read = EntityProtobuf.read(protobuf, Reward.class);
+    assertEquals("user-1", read.getUserId());
+    assertEquals(100, read.getPoints());
+    assertEquals(3L, read.getVersion());
+  }
+
+  @Test
+  void patchWithStaleIfMatchFailsPrecondition() {
+    when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reward.class)))
+      .thenReturn(Mono.empty());
+    when(template.exists(any(Query.class), eq(Reward.class))).thenReturn(Mono.just(true));
+    client.patch()
+      .uri("/api/rewards/1")
+      .header(HttpHeaders.IF_MATCH, "\"2-pb\"")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("points", 130))
+      .exchange()
+      .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    ArgumentCaptor<Query> versioned = ArgumentCaptor.forClass(Query.class);
+    verify(template).findAndModify(versioned.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Reward.class));
+    assertEquals(2L, versioned.getValue().getQueryObject().get("version"));
+    verify(template, never()).upsert(any(Query.class), any(Update.class), eq(UserBalance.class));
+  }
+
+  @Test
+  void getByUserPagesWhenLimitIsGiven() {
+    Reward second = new Reward("2", "user-1", 50, "streak bonus");
+    when(repository.findByUserIdOrderByIdAsc("user-1", Limit.of(2))).thenReturn(Flux.just(reward, second));
+    client.get()
+      .uri("/api/rewards/user/user-1?limit=1")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(CursorPage.NEXT_CURSOR_HEADER, "1")
+      .expectBodyList(Reward.class)
+      .hasSize(1);
+    verify(repository, never()).findByUserId(any());
+  }
+
+  @Test
+  void getByUserStreamsNdjsonWhenRequested() {
+    Reward second = new Reward("2", "user-1", 50, "streak bonus");
+    when(repository.findByUserId("user-1")).thenReturn(Flux.just(reward, second));
+    client.get()
+      .uri("/api/rewards/user/user-1")
+      .accept(MediaType.APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+      .returnResult(Reward.class)
+      .getResponseBody()
+      .as(StepVerifier::create)
+      .expectNextMatches(r -> "1".equals(r.getId()))
+      .expectNextMatches(r -> "2".equals(r.getId()))
+      .verifyComplete();
+  }
+
+  @Test
+  void getByUserStreamCancelsItsQueryWhenTheClientGoesAway() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    // An endless cursor: only backpressure keeps it from being read to the end
+    when(repository.findByUserId("user-1")).thenReturn(Flux.<Reward, Integer>generate(() -> 0, (i, sink) -> {
+      sink.next(new Reward(String.valueOf(i), "user-1", 10, "tick"));
+      return i + 1;
+    }).doOnCancel(() -> cancelled.set(true)));
+    client.get()
+      .uri("/api/rewards/user/user-1")
+      .accept(MediaType.APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(Reward.class)
+      .getResponseBody()
+      .as(StepVerifier::create)
+      .expectNextCount(2)
+      .thenCancel()
+      .verify(Duration.ofSeconds(5));
+    Flux.interval(Duration.ofMillis(10)).filter(tick -> cancelled.get()).blockFirst(Duration.ofSeconds(5));
+    assertTrue(cancelled.get());
+  }
+
+  @Test
+  void getByUserStreamsOnlyWhenAStreamingTypeRanksFirst() {
+    when(repository.findByUserId("user-1")).thenReturn(Flux.just(reward));
+    client.get()
+      .uri("/api/rewards/user/user-1")
+      .header(HttpHeaders.ACCEPT, "application/json, application/x-ndjson;q=0.1")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON);
+    client.get()
+      .uri("/api/rewards/user/user-1")
+      .header(HttpHeaders.ACCEPT, "application/json;q=0.5, text/event-stream")
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM);
+  }
+
+  @Test
+  void getByUserWritesOneCborArray() throws IOException {
+    Reward second = new Reward("2", "user-1", 50, "streak bonus");
+    when(repository.findByUserId("user-1")).thenReturn(Flux.just(reward, second));
+    byte[] cbor = client.get()
+      .uri("/api/rewards/user/user-1")
+      .accept(MediaType.APPLICATION_CBOR)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+      .expectBody(byte[].class)
+      .returnResult()
+      .getResponseBody();
+    assertEquals(2, new CBORMapper().readValue(cbor, Reward[].class).length);
+  }
+
+  @Test
+  void getBalancesKeepsRequestOrderAndFillsMissingUsers() {
+    when(template.find(any(Query.class), eq(UserBalance.class)))
+      .thenReturn(Flux.just(new UserBalance("user-1", 350, 2)));
+    client.get()
+      .uri("/api/rewards/balances?userId=user-9,user-1")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$[0].userId").isEqualTo("user-9")
+      .jsonPath("$[0].totalPoints").isEqualTo(0)
+      .jsonPath("$[1].userId").isEqualTo("user-1")
+      .jsonPath("$[1].totalPoints").isEqualTo(350)
+      .jsonPath("$[1].rewardCount").isEqualTo(2);
+  }
+
+  @Test
+  void createBatchReportsInvalidElementsIndividually() {
+    ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+    when(template.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulk);
+    when(bulk.insert(anyList())).thenReturn(bulk);
+    when(bulk.upsert(any(Query.class), any(Update.class))).thenReturn(bulk);
+    when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+    client.post()
+      .uri("/api/rewards/batch")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(List.of(new Reward("user-1", 10, "first"), new Reward("", 20, "no user")))
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.length()").isEqualTo(2)
+      .jsonPath("$[0].status").isEqualTo(BatchItemResult.CREATED)
+      .jsonPath("$[0].id").isNotEmpty()
+      .jsonPath("$[1].index").isEqualTo(1)
+      .jsonPath("$[1].status").isEqualTo(BatchItemResult.INVALID);
+  }
+
+  @Test
+  void createBatchReadsCborArraysAndProtobufLists() throws IOException {
+    ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+    when(template.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulk);
+    when(bulk.insert(anyList())).thenReturn(bulk);
+    when(bulk.upsert(any(Query.class), any(Update.class))).thenReturn(bulk);
+    when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+    List<Reward> rewards = List.of(new Reward("user-1", 10, "first"), new Reward("user-2", 20, null));
+
+    client.post()
+      .uri("/api/rewards/batch")
+      .contentType(MediaType.APPLICATION_CBOR)
+      .bodyValue(new CBORMapper().writeValueAsBytes(rewards))
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.length()").isEqualTo(2)
+      .jsonPath("$[1].status").isEqualTo(BatchItemResult.CREATED);
+    client.post()
+      .uri("/api/rewards/batch")
+      .contentType(Representations.APPLICATION_PROTOBUF)
+      .bodyValue(EntityProtobuf.write(rewards))
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.length()").isEqualTo(2)
+      .jsonPath("$[1].status").isEqualTo(BatchItemResult.CREATED);
+  }
+
+  @Test
+  void patchSetsOnlyGivenFieldsAndMovesBalanceDelta() {
+    when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reward.class)))
+      .thenReturn(Mono.just(reward));
+    when(template.upsert(any(Query.class), any(Update.class), eq(UserBalance.class)))
+      .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    client.patch()
+      .uri("/api/rewards/1")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("points", 130))
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.points").isEqualTo(130)
+      .jsonPath("$.description").isEqualTo("welcome bonus");
+    verify(template).findAndModify(any(Query.class), eq(new Update().inc("version", 1).set("points", 130)),
+      any(FindAndModifyOptions.class), eq(Reward.class));
+    verify(template).upsert(any(Query.class),
+      eq(new Update().inc("totalPoints", 30L).inc("rewardCount", 0L)), eq(UserBalance.class));
+  }
+
+  @Test
+  void patchOfRewardWithoutUserMovesNoBalance() {
+    Reward userless = new Reward("1", null, 100, "welcome bonus");
+    when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reward.class)))
+      .thenReturn(Mono.just(userless));
+    client.patch()
+      .uri("/api/rewards/1")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("points", 130))
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.points").isEqualTo(130);
+    verify(template, never()).upsert(any(Query.class), any(Update.class), eq(UserBalance.class));
+  }
+
+  @Test
+  void patchRejectsUnknownFields() {
+    client.patch()
+      .uri("/api/rewards/1")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("id", "2"))
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody()
+      .jsonPath("$.error").isEqualTo("Field cannot be updated: id");
+  }
+
+  @Test
+  void incrementPointsGuardsBothEndsOfTheIntRange() {
+    when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reward.class)))
+      .thenReturn(Mono.empty());
+    when(template.exists(any(Query.class), eq(Reward.class))).thenReturn(Mono.just(true));
+
+    client.post()
+      .uri("/api/rewards/1/points:increment")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("amount", Integer.MIN_VALUE))
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody()
+      .jsonPath("$.error").isEqualTo("Reward 1 has fewer than 2147483648 points");
+    client.post()
+      .uri("/api/rewards/1/points:increment")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("amount", Integer.MAX_VALUE))
+      .exchange()
+      .expectStatus().isBadRequest()
+      .expectBody()
+      .jsonPath("$.error").isEqualTo("Reward 1 cannot exceed 2147483647 points");
+
+    ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+    verify(template, times(2)).findAndModify(queries.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Reward.class));
+    assertEquals(new Document("_id", "1").append("points", new Document("$gte", 2147483648L)),
+      queries.getAllValues().get(0).getQueryObject());
+    assertEquals(new Document("_id", "1").append("points", new Document("$lte", 0L)),
+      queries.getAllValues().get(1).getQueryObject());
+    verify(template, never()).upsert(any(Query.class), any(Update.class), eq(UserBalance.class));
+  }
+
+  @Test
+  void incrementPointsUsesSingleAtomicUpdate() {
+    Reward incremented = new Reward("1", "user-1", 125, "welcome bonus");
+    when(template.findAndModify(any(Query.class), eq(new Update().inc("points", 25).inc("version", 1)), any(FindAndModifyOptions.class), eq(Reward.class)))
+      .thenReturn(Mono.just(incremented));
+    when(template.upsert(any(Query.class), any(Update.class), eq(UserBalance.class)))
+      .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    client.post()
+      .uri("/api/rewards/1/points:increment")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(Map.of("amount", 25))
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.points").isEqualTo(125);
   }
 
   @Test
   void create() {
     when(repository.save(any(Reward.class))).thenReturn(Mono.just(reward));
+    when(template.upsert(any(Query.class), any(Update.class), eq(UserBalance.class)))
+      .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
     client.post()
       .uri("/api/rewards")
       .contentType(MediaType.APPLICATION_JSON)
@@ -59,6 +584,61 @@ class RewardRouterTest {
       .expectBody()
       .jsonPath("$.id").isEqualTo("1")
       .jsonPath("$.userId").isEqualTo("user-1");
+    verify(template).upsert(any(Query.class),
+      eq(new Update().inc("totalPoints", 100L).inc("rewardCount", 1L)), eq(UserBalance.class));
   }
-}
 
+  @Test
+  void createIsUnavailableWhileTheWriteBufferIsFull() {
+    var full = new RewardWriteBuffer(template, balances, new SimpleMeterRegistry(),
+      true, 100, Duration.ofMinutes(5), 0, 1, Duration.ofSeconds(10));
+    client(full).post()
+      .uri("/api/rewards")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(reward)
+      .exchange()
+      .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+      .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    verify(repository, never()).save(any(Reward.class));
+  }
+
+  @Test
+  void createReportsServerTimingPerPhase() {
+    when(repository.save(any(Reward.class))).thenReturn(Mono.just(reward));
+    when(template.upsert(any(Query.class), any(Update.class), eq(UserBalance.class)))
+      .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+    String header = client.post()
+      .uri("/api/rewards")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(reward)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(String.class)
+      .getResponseHeaders()
+      .getFirst(ServerTiming.HEADER);
+    assertTrue(header.matches("decode;dur=[0-9.]+, validate;dur=[0-9.]+, db;dur=[0-9.]+, encode;dur=[0-9.]+, total;dur=[0-9.]+"),
+      header);
+  }
+
+  @Test
+  void recordsHandlerEventWhileFlightRecorderIsRunning() throws IOException {
+    when(repository.findById("1")).thenReturn(Mono.just(reward));
+    Path file = Files.createTempFile("handler-events", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.example.rewards.Handler");
+      recording.start();
+      client.get().uri("/api/rewards/1").exchange().expectStatus().isOk().expectBody().returnResult();
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+
+    assertEquals(1, events.size());
+    RecordedEvent event = events.get(0);
+    assertEquals("GET", event.getString("method"));
+    assertEquals("/api/rewards/{id}", event.getString("route"));
+    assertEquals("1", event.getString("entityId"));
+    assertEquals(200, event.getInt("status"));
+  }
+}
@@ -0,0 +1,120 @@
+package com.example.rewards.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.Http2;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.server.reactive.HttpHandler;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NettyServerConfigTest {
+
+  // Reports the arenas of the allocator the response is written with
+  private static final HttpHandler HANDLER = (request, response) -> {
+    PooledByteBufAllocator allocator = (PooledByteBufAllocator) ((NettyDataBufferFactory) response.bufferFactory()).getByteBufAllocator();
+    String body = "arenas=" + allocator.metric().numDirectArenas();
+    return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8))));
+  };
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private NettyServerConfig.NettyServerTuning tuning;
+  private WebServer server;
+  private ConnectionProvider connections;
+
+  @AfterEach
+  void stop() {
+    if (connections != null) {
+      connections.disposeLater().block();
+    }
+    server.stop();
+    tuning.destroy();
+  }
+
+  @Test
+  void servesH2cAndHttp11WithTheConfiguredResources() {
+    start(0, 2);
+    HttpClient h2c = client(HttpProtocol.H2C);
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals("HTTP/2.0 arenas=3", get(h2c, Duration.ofSeconds(5)));
+    }
+    assertEquals("HTTP/1.1 arenas=3", get(client(HttpProtocol.HTTP11), Duration.ofSeconds(5)));
+    // the three h2c requests were streams of one connection
+    assertEquals(2.0, openConnections());
+  }
+
+  @Test
+  void holdsNewConnectionsBackAtTheLimit() throws IOException {
+    start(1, 0);
+
+    try (Socket first = new Socket("localhost", server.getPort())) {
+      waitForOpenConnections(1);
+      // The accept in progress when the limit is reached may still take this one (epoll)
+      try (Socket second = new Socket("localhost", server.getPort())) {
+        assertThrows(IllegalStateException.class, () -> get(client(HttpProtocol.HTTP11), Duration.ofMillis(500)));
+        assertTrue(openConnections() <= 2);
+      }
+    }
+    waitForOpenConnections(0);
+    assertEquals("HTTP/1.1 arenas=3", get(client(HttpProtocol.HTTP11), Duration.ofSeconds(5)));
+  }
+
+  private void start(int maxConnections, int eventLoopThreads) {
+    DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+    beans.registerSingleton("meterRegistry", registry);
+    ObjectProvider<MeterRegistry> meterRegistry = beans.getBeanProvider(MeterRegistry.class);
+    tuning = new NettyServerConfig().nettyServerTuning(meterRegistry, eventLoopThreads, maxConnections, 128, 100, true, true, 3, 0);
+    NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory(0);
+    Http2 http2 = new Http2();
+    http2.setEnabled(true);
+    factory.setHttp2(http2);
+    factory.addServerCustomizers(tuning);
+    server = factory.getWebServer(HANDLER);
+    server.start();
+    connections = ConnectionProvider.create("test");
+  }
+
+  private HttpClient client(HttpProtocol protocol) {
+    return HttpClient.create(connections).protocol(protocol).baseUrl("http://localhost:" + server.getPort());
+  }
+
+  /**
+   * The protocol version of the response, followed by its body.
+   */
+  private static String get(HttpClient client, Duration timeout) {
+    return client.get()
+      .uri("/")
+      .responseSingle((response, body) -> body.asString().map(content -> response.version().text() + " " + content))
+      .block(timeout);
+  }
+
+  private double openConnections() {
+    return registry.get("http.server.connections.open").gauge().value();
+  }
+
+  private void waitForOpenConnections(int expected) {
+    Flux.interval(Duration.ofMillis(10))
+      .filter(tick -> openConnections() == expected)
+      .blockFirst(Duration.ofSeconds(5));
+  }
+}
@@ -0,0 +1,75 @@
+package com.example.rewards.repo;
+
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CommandEventListenerTest {
+
+  private static final ConnectionDescription CONNECTION =
+    new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+  private final CommandEventListener listener = new CommandEventListener(Duration.ZERO);
+
+  @Test
+  void recordsTemplateCommandsWhileFlightRecorderIsRunning() throws IOException {
+    Path file = Files.createTempFile("command-events", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.example.rewards.MongoCommand");
+      recording.start();
+      listener.commandStarted(started(1, "find", new BsonDocument("find", new BsonString("rewards"))));
+      listener.commandSucceeded(new CommandSucceededEvent(null, 1, 1, CONNECTION, "rewards", "find",
+        new BsonDocument("cursor", new BsonDocument("firstBatch",
+          new BsonArray(List.of(new BsonDocument(), new BsonDocument())))), 2_000_000));
+      listener.commandStarted(started(2, "getMore", new BsonDocument("getMore", new BsonInt64(7))
+        .append("collection", new BsonString("rewards"))));
+      listener.commandStarted(started(3, "insert", new BsonDocument("insert", new BsonString("user_balances"))));
+      listener.commandSucceeded(new CommandSucceededEvent(null, 3, 3, CONNECTION, "rewards", "insert",
+        new BsonDocument("n", new BsonInt32(3)), 1_000_000));
+      listener.commandFailed(new CommandFailedEvent(null, 2, 2, CONNECTION, "rewards", "getMore",
+        1_000_000, new MongoException("cursor killed")));
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+
+    assertEquals(3, events.size());
+    assertEquals("find", events.get(0).getString("command"));
+    assertEquals("rewards", events.get(0).getString("collection"));
+    assertEquals(2, events.get(0).getLong("documents"));
+    assertNull(events.get(0).getString("error"));
+    assertEquals("user_balances", events.get(1).getString("collection"));
+    assertEquals(3, events.get(1).getLong("documents"));
+    assertEquals("getMore", events.get(2).getString("command"));
+    assertEquals("rewards", events.get(2).getString("collection"));
+    assertEquals("MongoException", events.get(2).getString("error"));
+  }
+
+  private static CommandStartedEvent started(int requestId, String commandName, BsonDocument command) {
+    return new CommandStartedEvent(null, requestId, requestId, CONNECTION, "rewards", commandName, command);
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import org.bson.BsonReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The codecs must read what {@code MappingMongoConverter} writes, since writes still go
+ * through the converter.
+ */
+class EntityCodecTest {
+
+  private MappingMongoConverter converter;
+
+  @BeforeEach
+  void setup() {
+    MongoMappingContext context = new MongoMappingContext();
+    context.afterPropertiesSet();
+    converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+    converter.afterPropertiesSet();
+  }
+
+  @Test
+  void decodesRewardsWrittenByTheConverter() {
+    Reward written = new Reward(new ObjectId().toHexString(), "user-1", 150, "Completed tutorial");
+    written.setVersion(3L);
+
+    Reward read = decode(toBson(written), new RewardCodec());
+
+    assertEquals(written.getId(), read.getId());
+    assertEquals("user-1", read.getUserId());
+    assertEquals(150, read.getPoints());
+    assertEquals("Completed tutorial", read.getDescription());
+    assertEquals(3L, read.getVersion());
+  }
+
+  @Test
+  void decodesWidenedNumbersAndMissingFields() {
+    RawBsonDocument bson = new RawBsonDocument(new Document("_id", "legacy-id")
+      .append("userId", "user-2")
+      .append("points", 42L)
+      .append("description", null)
+      .append("_class", Reward.class.getName()), new DocumentCodec());
+
+    Reward read = decode(bson, new RewardCodec());
+
+    assertEquals("legacy-id", read.getId());
+    assertEquals(42, read.getPoints());
+    assertNull(read.getDescription());
+    assertNull(read.getVersion());
+  }
+
+  @Test
+  void decodesProjectsWrittenByTheConverter() {
+    Project written = new Project("Project Alpha", "Running", "Web App", 75);
+    written.setId(new ObjectId().toHexString());
+    written.setVersion(1L);
+
+    Project read = decode(toBson(written), new ProjectCodec());
+
+    assertEquals(written.getId(), read.getId());
+    assertEquals("Project Alpha", read.getName());
+    assertEquals("Running", read.getStatus());
+    assertEquals("Web App", read.getType());
+    assertEquals(75, read.getProgress());
+    assertEquals(1L, read.getVersion());
+
+  }
+
+  private RawBsonDocument toBson(Object entity) {
+    Document document = new Document();
+    converter.write(entity, document);
+    return new RawBsonDocument(document, new DocumentCodec());
+  }
+
+  private static <T> T decode(RawBsonDocument bson, Codec<T> codec) {
+    try (BsonReader reader = bson.asBsonReader()) {
+      return codec.decode(reader, DecoderContext.builder().build());
+    }
+  }
+}
@@ -0,0 +1,413 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.config.IndexVerifier;
+import com.example.rewards.model.Project;
+import com.example.rewards.model.Reward;
+import com.example.rewards.service.EntityCache;
+import com.example.rewards.service.ProjectService;
+import com.example.rewards.service.RewardService;
+import com.example.rewards.service.RewardWriteBuffer;
+import com.example.rewards.service.UserBalanceService;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs every query the repositories and services issue against a real MongoDB, then
+ * {@code explain}s each captured command and fails on plans that will not scale: a
+ * {@code COLLSCAN}, or a find that examines many more documents than it returns.
+ *
+ * The data set is small, but with the declared indexes in place the planner already picks
+ * the same plans it would on a large collection. Queries that read a whole collection by
+ * design are listed with the reason. A new repository method without a case here fails
+ * {@link #everyRepositoryMethodHasAPlanCase()}, and a new public service method fails
+ * {@link #everyServiceMethodHasAPlanCase()} unless it is listed as issuing no query of its own.
+ *
+ * Needs Docker; skipped when it is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanTest {
+
+  // A find may examine at most this many documents per document it returns
+  private static final double MAX_EXAMINED_PER_RETURNED = 2.0;
+  private static final Set<String> EXPLAINABLE_COMMANDS =
+    Set.of("find", "aggregate", "distinct", "count", "findAndModify", "update", "delete");
+  private static final String DATABASE = "query_plans";
+  private static final int USERS = 200;
+  private static final int REWARDS_PER_USER = 25;
+  private static final int PROJECTS = 1000;
+  // Public service methods whose queries are all covered by the case named next to them
+  private static final Map<String, String> WITHOUT_OWN_QUERY = Map.ofEntries(
+    Map.entry("RewardService.findAll", "RewardRepository.findAll"),
+    Map.entry("RewardService.findPage", "RewardRepository.findAllByOrderByIdAsc / findByIdGreaterThanOrderByIdAsc"),
+    Map.entry("RewardService.findById", "RewardRepository.findById"),
+    Map.entry("RewardService.findByUser", "RewardRepository.findByUserId"),
+    Map.entry("RewardService.streamByUser", "RewardRepository.findByUserId"),
+    Map.entry("RewardService.findPageByUser", "RewardRepository.findByUserIdOrderByIdAsc / findByUserIdAndIdGreaterThanOrderByIdAsc"),
+    Map.entry("RewardService.balanceFor", "UserBalanceService.find"),
+    Map.entry("RewardService.balancesFor", "UserBalanceService.findAll"),
+    Map.entry("RewardService.create", "an insert, then UserBalanceService.applyDelta"),
+    Map.entry("RewardService.createAll", "a bulk insert, then UserBalanceService.applyInserted"),
+    Map.entry("RewardService.update", "RewardService.patch"),
+    Map.entry("ProjectService.findAll", "ProjectRepository.findAll"),
+    Map.entry("ProjectService.findPage", "ProjectRepository.findAllByOrderByIdAsc / findByIdGreaterThanOrderByIdAsc / findByFilter"),
+    Map.entry("ProjectService.findById", "ProjectRepository.findById"),
+    Map.entry("ProjectService.create", "an insert"),
+    Map.entry("ProjectService.update", "ProjectService.patch"),
+    Map.entry("ProjectService.destroy", "no query"));
+
+  @Container
+  private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+  private static final List<BsonDocument> captured = new CopyOnWriteArrayList<>();
+
+  private static MongoClient client;
+  private static RewardRepository rewardRepository;
+  private static ProjectRepository projectRepository;
+  private static RewardService rewardService;
+  private static ProjectService projectService;
+  private static UserBalanceService balances;
+  private static List<Reward> rewards;
+  private static List<Project> projects;
+
+  @BeforeAll
+  static void setup() {
+    client = MongoClients.create(MongoClientSettings.builder()
+      .applyConnectionString(new ConnectionString(mongo.getConnectionString()))
+      .addCommandListener(new CommandListener() {
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+          if (EXPLAINABLE_COMMANDS.contains(event.getCommandName()) && DATABASE.equals(event.getDatabaseName())) {
+            captured.add(event.getCommand().clone());
+          }
+        }
+      })
+      .build());
+    ReactiveMongoTemplate template = new ReactiveMongoTemplate(client, DATABASE);
+    ReactiveMongoRepositoryFactory factory = new ReactiveMongoRepositoryFactory(template);
+    rewardRepository = factory.getRepository(RewardRepository.class, new RewardRepositoryCustomImpl(template));
+    projectRepository = factory.getRepository(ProjectRepository.class, new ProjectRepositoryCustomImpl(template));
+
+    balances = new UserBalanceService(template, 50, 2);
+    var registry = new SimpleMeterRegistry();
+    var writeBuffer = new RewardWriteBuffer(template, balances, registry,
+      false, 100, Duration.ofMillis(5), 10_000, 2, Duration.ofSeconds(10));
+    rewardService = new RewardService(rewardRepository, template, balances, writeBuffer,
+      new EntityCache<>("rewards", 0, Duration.ZERO, registry), 500, 2);
+    projectService = new ProjectService(projectRepository, template,
+      new EntityCache<>("projects", 0, Duration.ZERO, registry), Duration.ZERO, Duration.ZERO);
+
+    IndexVerifier indexes = new IndexVerifier(template);
+    indexes.verify(Reward.class).block();
+    indexes.verify(Project.class).block();
+
+    rewards = template.insertAll(IntStream.range(0, USERS * REWARDS_PER_USER)
+        .mapToObj(i -> new Reward(null, "user-" + (i % USERS), i % 500, "reward " + i))
+        .toList())
+      .collectList()
+      .block();
+    String[] statuses = {"Running", "Ended", "Pending"};
+    String[] types = {"Web App", "Mobile App", "Desktop App", "API"};
+    projects = template.insertAll(IntStream.range(0, PROJECTS)
+        .mapToObj(i -> new Project("Project " + i, statuses[i % statuses.length], types[(i / 3) % types.length], i % 101))
+        .toList())
+      .collectList()
+      .block();
+    balances.rebuild().block();
+  }
+
+  @AfterAll
+  static void close() {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  @TestFactory
+  Stream<DynamicTest> queryPlans() {
+    return cases().stream().map(query -> DynamicTest.dynamicTest(query.name(), () -> verifyPlans(query)));
+  }
+
+  @Test
+  void everyRepositoryMethodHasAPlanCase() {
+    Set<String> covered = new TreeSet<>();
+    cases().forEach(query -> covered.add(query.name().replaceAll("\\s*\\(.*", "")));
+    Set<String> missing = new TreeSet<>();
+    for (Class<?> repository : List.of(RewardRepository.class, RewardRepositoryCustom.class,
+        ProjectRepository.class, ProjectRepositoryCustom.class)) {
+      String owner = repository.getSimpleName().replace("Custom", "");
+      for (Method method : repository.getDeclaredMethods()) {
+        if (!method.isSynthetic() && !covered.contains(owner + "." + method.getName())) {
+          missing.add(owner + "." + method.getName());
+        }
+      }
+    }
+    assertTrue(missing.isEmpty(), "Query methods without a query plan case: " + missing);
+  }
+
+  /**
+   * Services also query through the template directly. A method taking a {@code fields} set is
+   * covered by a case named {@code "Service.method (fields...)"}, its other overloads by a case
+   * named {@code "Service.method"} (followed by anything else in parentheses).
+   */
+  @Test
+  void everyServiceMethodHasAPlanCase() {
+    Set<String> covered = new TreeSet<>();
+    cases().forEach(query -> covered.add(methodKey(query.name())));
+    Set<String> missing = new TreeSet<>();
+    for (Class<?> service : List.of(RewardService.class, ProjectService.class, UserBalanceService.class)) {
+      for (Method method : service.getDeclaredMethods()) {
+        if (!Modifier.isPublic(method.getModifiers()) || method.isSynthetic()) {
+          continue;
+        }
+        String name = service.getSimpleName() + "." + method.getName();
+        String key = List.of(method.getParameterTypes()).contains(Set.class) ? name + " (fields)" : name;
+        if (!covered.contains(key) && !WITHOUT_OWN_QUERY.containsKey(key)) {
+          missing.add(key);
+        }
+      }
+    }
+    assertTrue(missing.isEmpty(), "Service methods without a query plan case: " + missing);
+  }
+
+  private static List<QueryCase> cases() {
+    String after = rewards.get(rewards.size() / 2).getId();
+    Reward target = rewards.get(42);
+    String projectCursor = new ObjectId(0, 0).toHexString();
+    Project project = projects.get(42);
+    List<QueryCase> cases = new ArrayList<>();
+
+    cases.add(QueryCase.of("RewardRepository.findById", () -> rewardRepository.findById(target.getId())));
+    cases.add(QueryCase.fullScan("RewardRepository.findAll", "full export, streamed to NDJSON/SSE clients",
+      () -> rewardRepository.findAll()));
+    cases.add(QueryCase.of("RewardRepository.findByUserId", () -> rewardRepository.findByUserId("user-7")));
+    cases.add(QueryCase.of("RewardRepository.findAllByOrderByIdAsc",
+      () -> rewardRepository.findAllByOrderByIdAsc(Limit.of(101))));
+    cases.add(QueryCase.of("RewardRepository.findByIdGreaterThanOrderByIdAsc",
+      () -> rewardRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(101))));
+    cases.add(QueryCase.of("RewardRepository.findByUserIdOrderByIdAsc",
+      () -> rewardRepository.findByUserIdOrderByIdAsc("user-7", Limit.of(11))));
+    cases.add(QueryCase.of("RewardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc",
+      () -> rewardRepository.findByUserIdAndIdGreaterThanOrderByIdAsc("user-7", after, Limit.of(11))));
+
+    cases.add(QueryCase.of("ProjectRepository.findAllByOrderByIdAsc",
+      () -> projectRepository.findAllByOrderByIdAsc(Limit.of(101))));
+    cases.add(QueryCase.of("ProjectRepository.findByIdGreaterThanOrderByIdAsc",
+      () -> projectRepository.findByIdGreaterThanOrderByIdAsc(projectCursor, Limit.of(101))));
+    cases.add(QueryCase.of("ProjectRepository.findByFilter (status)",
+      () -> projectRepository.findByFilter(new ProjectFilter("Running", null, null), null, Limit.of(101))));
+    cases.add(QueryCase.of("ProjectRepository.findByFilter (type)",
+      () -> projectRepository.findByFilter(new ProjectFilter(null, "API", null), null, Limit.of(101))));
+    cases.add(QueryCase.of("ProjectRepository.findByFilter (status, type, minProgress)",
+      () -> projectRepository.findByFilter(new ProjectFilter("Running", "Web App", 50), projectCursor, Limit.of(101))));
+    // A wide range fills the page fastest by walking _id in order and filtering, so the
+    // examined/returned ratio is 1 / selectivity of the range
+    cases.add(QueryCase.withRatio("ProjectRepository.findByFilter (minProgress)", 4.0,
+      () -> projectRepository.findByFilter(new ProjectFilter(null, null, 50), null, Limit.of(101))));
+    // A selective one reads only its matches through progress_id
+    cases.add(QueryCase.of("ProjectRepository.findByFilter (selective minProgress)",
+      () -> projectRepository.findByFilter(new ProjectFilter(null, null, 98), null, Limit.of(101))));
+
+    cases.add(QueryCase.fullScan("RewardService.findAll (fields)", "full export with ?fields=, streamed like findAll",
+      () -> rewardService.findAll(Set.of("points"))));
+    cases.add(QueryCase.of("RewardService.findPage (fields)",
+      () -> rewardService.findPage(after, 101, Set.of("points"))));
+    cases.add(QueryCase.of("RewardService.findPageByUser (fields)",
+      () -> rewardService.findPageByUser("user-7", null, 11, Set.of("points"))));
+    cases.add(QueryCase.of("RewardService.findById (fields)",
+      () -> rewardService.findById(target.getId(), Set.of("points"))));
+    cases.add(QueryCase.of("RewardService.findByUser (fields)",
+      () -> rewardService.findByUser("user-7", Set.of("points"))));
+    cases.add(QueryCase.of("RewardService.patch",
+      () -> rewardService.patch(target.getId(), Map.of("description", "patched"), null)));
+    cases.add(QueryCase.of("RewardService.patch (stale version, exists check)",
+      () -> staleVersion(rewardService.patch(target.getId(), Map.of("description", "stale"), 999L))));
+    cases.add(QueryCase.of("RewardService.incrementPoints", () -> rewardService.incrementPoints(target.getId(), 1)));
+    cases.add(QueryCase.of("RewardService.incrementPoints (too few points, exists check)",
+      () -> rewardService.incrementPoints(target.getId(), -1_000_000).onErrorResume(IllegalArgumentException.class, e -> Mono.empty())));
+    cases.add(QueryCase.of("RewardService.delete", () -> rewardService.delete(rewards.get(43).getId(), null)));
+    cases.add(QueryCase.of("RewardService.delete (stale version, exists check)",
+      () -> staleVersion(rewardService.delete(rewards.get(44).getId(), 999L))));
+    cases.add(QueryCase.of("UserBalanceService.find", () -> balances.find("user-7")));
+    cases.add(QueryCase.of("UserBalanceService.findAll", () -> balances.findAll(List.of("user-1", "user-2", "user-3"))));
+    cases.add(QueryCase.of("UserBalanceService.applyDelta", () -> balances.applyDelta("user-7", 5, 1)));
+    cases.add(QueryCase.of("UserBalanceService.applyInserted",
+      () -> balances.applyInserted(List.of(new Reward(null, "user-7", 5, "inserted"), new Reward(null, "user-8", 5, "inserted")))));
+    cases.add(QueryCase.fullScan("UserBalanceService.rebuild", "repair job over every reward; not on a request path",
+      () -> balances.rebuild()));
+    cases.add(QueryCase.fullScan("ProjectService.stats", "aggregates every project; served from a snapshot",
+      () -> projectService.stats()));
+    cases.add(QueryCase.of("ProjectService.findPage (fields)",
+      () -> projectService.findPage(new ProjectFilter(null, null, null), projectCursor, 101, Set.of("name"))));
+    cases.add(QueryCase.of("ProjectService.findPage (fields, status, type)",
+      () -> projectService.findPage(new ProjectFilter("Running", "Web App", null), null, 101, Set.of("name"))));
+    cases.add(QueryCase.of("ProjectService.findById (fields)",
+      () -> projectService.findById(project.getId(), Set.of("name"))));
+    cases.add(QueryCase.of("ProjectService.patch",
+      () -> projectService.patch(project.getId(), Map.of("progress", 60), null)));
+    cases.add(QueryCase.of("ProjectService.patch (stale version, exists check)",
+      () -> staleVersion(projectService.patch(project.getId(), Map.of("progress", 70), 999L))));
+    cases.add(QueryCase.of("ProjectService.delete", () -> projectService.delete(projects.get(43).getId(), null)));
+    cases.add(QueryCase.of("ProjectService.delete (versioned)",
+      () -> projectService.delete(projects.get(44).getId(), projects.get(44).getVersion())));
+    cases.add(QueryCase.of("ProjectService.delete (stale version, exists check)",
+      () -> staleVersion(projectService.delete(projects.get(45).getId(), 999L))));
+    return cases;
+  }
+
+  /**
+   * Runs a write expected to miss on its version, so that the existence check behind the
+   * conflict is issued (and explained) too.
+   */
+  private static <T> Mono<T> staleVersion(Mono<T> write) {
+    return write.onErrorResume(OptimisticLockingFailureException.class, e -> Mono.empty());
+  }
+
+  /**
+   * The method a case covers: its name without the description in parentheses, except that a
+   * description starting with {@code fields} marks the sparse-fieldset overload.
+   */
+  private static String methodKey(String caseName) {
+    int description = caseName.indexOf(" (");
+    if (description < 0) {
+      return caseName;
+    }
+    return caseName.substring(0, description) + (caseName.startsWith("(fields", description + 1) ? " (fields)" : "");
+  }
+
+  private static void verifyPlans(QueryCase query) {
+    captured.clear();
+    Flux.from(query.query().get()).then().block();
+    List<BsonDocument> commands = List.copyOf(captured);
+    assertFalse(commands.isEmpty(), query.name() + " issued no query");
+    for (BsonDocument command : commands) {
+      Document explain = explain(command);
+      List<String> stages = new ArrayList<>();
+      collect(explain, "stage", stages);
+      if (query.fullScanReason() == null) {
+        assertFalse(stages.contains("COLLSCAN"),
+          () -> query.name() + " scans the whole collection: " + command.toJson() + "\nstages " + stages);
+      }
+      // Grouping stages return fewer documents than they read by design, so only finds are held to the ratio
+      String commandName = command.getFirstKey();
+      if (commandName.equals("find") || commandName.equals("findAndModify")) {
+        Document stats = first(explain, "executionStats");
+        if (stats == null) {
+          fail(query.name() + " has no executionStats in its explain output");
+        }
+        long examined = ((Number) stats.get("totalDocsExamined")).longValue();
+        long returned = ((Number) stats.get("nReturned")).longValue();
+        double ratio = (double) examined / Math.max(returned, 1);
+        assertTrue(ratio <= query.maxExaminedPerReturned(), () -> String.format(
+          "%s examined %d documents to return %d (max ratio %.1f): %s",
+          query.name(), examined, returned, query.maxExaminedPerReturned(), command.toJson()));
+      }
+    }
+  }
+
+  private static Document explain(BsonDocument command) {
+    BsonDocument explained = command.clone();
+    for (String field : List.of("$db", "lsid", "$clusterTime", "$readPreference", "txnNumber", "apiVersion")) {
+      explained.remove(field);
+    }
+    BsonDocument explainCommand = new BsonDocument("explain", explained)
+      .append("verbosity", new BsonString("executionStats"));
+    Document result = Mono.from(client.getDatabase(DATABASE).runCommand(explainCommand)).block();
+    assertEquals(1.0, ((Number) result.get("ok")).doubleValue(), () -> "explain failed: " + result.toJson());
+    return result;
+  }
+
+  private static void collect(Object node, String key, List<String> values) {
+    if (node instanceof Map<?, ?> map) {
+      map.forEach((name, value) -> {
+        if (key.equals(name) && value instanceof String string) {
+          values.add(string);
+        }
+        collect(value, key, values);
+      });
+    } else if (node instanceof List<?> list) {
+      list.forEach(element -> collect(element, key, values));
+    }
+  }
+
+  private static Document first(Object node, String key) {
+    if (node instanceof Map<?, ?> map) {
+      if (map.get(key) instanceof Document found) {
+        return found;
+      }
+      for (Object value : map.values()) {
+        Document found = first(value, key);
+        if (found != null) {
+          return found;
+        }
+      }
+    } else if (node instanceof List<?> list) {
+      for (Object element : list) {
+        Document found = first(element, key);
+        if (found != null) {
+          return found;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param fullScanReason why reading the whole collection is intended, or null when it must not
+   */
+  private record QueryCase(String name, Supplier<Publisher<?>> query, String fullScanReason, double maxExaminedPerReturned) {
+
+    static QueryCase of(String name, Supplier<Publisher<?>> query) {
+      return new QueryCase(name, query, null, MAX_EXAMINED_PER_RETURNED);
+    }
+
+    static QueryCase withRatio(String name, double maxExaminedPerReturned, Supplier<Publisher<?>> query) {
+      return new QueryCase(name, query, null, maxExaminedPerReturned);
+    }
+
+    static QueryCase fullScan(String name, String reason, Supplier<Publisher<?>> query) {
+      return new QueryCase(name, query, reason, Double.MAX_VALUE);
+    }
+  }
+}
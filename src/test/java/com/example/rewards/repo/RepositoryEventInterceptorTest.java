@@ -0,0 +1,80 @@
+package com.example.rewards.repo;
+
+import com.example.rewards.model.Reward;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RepositoryEventInterceptorTest {
+
+  private RewardRepository target;
+  private RewardRepository repository;
+
+  @BeforeEach
+  void setup() {
+    target = mock(RewardRepository.class);
+    ProxyFactory proxy = new ProxyFactory(target);
+    proxy.addInterface(RewardRepository.class);
+    proxy.addAdvice(new RepositoryEventInterceptor(RewardRepository.class, Reward.class,
+      entity -> ((Reward) entity).getId(), Duration.ZERO));
+    repository = (RewardRepository) proxy.getProxy();
+  }
+
+  @Test
+  void countsDocumentsIntoTheCallersContext() {
+    when(target.findByUserId("user-1")).thenReturn(Flux.just(
+      new Reward("1", "user-1", 10, "a"), new Reward("2", "user-1", 20, "b")));
+    LongAdder documents = new LongAdder();
+
+    StepVerifier.create(repository.findByUserId("user-1")
+        .contextWrite(context -> context.put(RepositoryEventInterceptor.DOCUMENTS, documents)))
+      .expectNextCount(2)
+      .verifyComplete();
+
+    assertEquals(2, documents.sum());
+  }
+
+  @Test
+  void recordsCallsWhileFlightRecorderIsRunning() throws IOException {
+    when(target.findById("1")).thenReturn(Mono.just(new Reward("1", "user-1", 10, "a")));
+    when(target.save(any(Reward.class)))
+      .thenReturn(Mono.just(new Reward("2", "user-2", 5, "new")));
+    Path file = Files.createTempFile("repository-events", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.example.rewards.Repository");
+      recording.start();
+      repository.findById("1").block();
+      repository.save(new Reward(null, "user-2", 5, "new")).block();
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+
+    assertEquals(2, events.size());
+    assertEquals("RewardRepository", events.get(0).getString("repository"));
+    assertEquals("findById", events.get(0).getString("method"));
+    assertEquals("1", events.get(0).getString("entityId"));
+    assertEquals(1, events.get(0).getLong("documents"));
+    assertEquals("save", events.get(1).getString("method"));
+    assertEquals("2", events.get(1).getString("entityId"));
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.rewards.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshingSnapshotTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private final AtomicLong now = new AtomicLong();
+  private final RefreshingSnapshot<Integer> snapshot =
+    new RefreshingSnapshot<>(() -> Mono.fromSupplier(loads::incrementAndGet), Duration.ofMinutes(5), now::get);
+
+  @Test
+  void refreshesOnlyWhileTheValueIsRead() {
+    StepVerifier.create(snapshot.refresh()).verifyComplete();
+    assertThat(loads).hasValue(0);
+
+    StepVerifier.create(snapshot.get()).expectNext(1).verifyComplete();
+    now.addAndGet(Duration.ofMinutes(4).toNanos());
+    StepVerifier.create(snapshot.refresh()).expectNext(2).verifyComplete();
+    StepVerifier.create(snapshot.get()).expectNext(2).verifyComplete();
+
+    now.addAndGet(Duration.ofMinutes(6).toNanos());
+    StepVerifier.create(snapshot.refresh()).verifyComplete();
+    StepVerifier.create(snapshot.refresh()).verifyComplete();
+    assertThat(loads).hasValue(2);
+
+    // The idle value was dropped rather than served stale
+    StepVerifier.create(snapshot.get()).expectNext(3).verifyComplete();
+  }
+}
@@ -0,0 +1,192 @@
+package com.example.rewards.service;
+
+import com.example.rewards.model.Reward;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RewardWriteBufferTest {
+
+  @Mock
+  private ReactiveMongoTemplate template;
+
+  @Mock
+  private UserBalanceService balances;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final List<Integer> insertedBatchSizes = new ArrayList<>();
+
+  // Indices of the next batch that fail to insert
+  private final Set<Integer> failing = new HashSet<>();
+
+  @BeforeEach
+  void setup() {
+    lenient().when(template.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Reward.class))).thenAnswer(invocation -> {
+      ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+      List<Reward> batch = new ArrayList<>();
+      when(bulk.insert(anyList())).thenAnswer(insert -> {
+        batch.addAll(insert.getArgument(0));
+        return bulk;
+      });
+      when(bulk.execute()).thenAnswer(execute -> {
+        insertedBatchSizes.add(batch.size());
+        if (failing.isEmpty()) {
+          return Mono.just(BulkWriteResult.unacknowledged());
+        }
+        List<BulkWriteError> errors = failing.stream()
+          .map(index -> new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), index))
+          .toList();
+        return Mono.error(new MongoBulkWriteException(BulkWriteResult.unacknowledged(), errors, null, new ServerAddress(), Set.of()));
+      });
+      return bulk;
+    });
+    lenient().when(balances.applyInserted(anyCollection())).thenReturn(Mono.empty());
+  }
+
+  @Test
+  void flushesOneInsertWhenBatchIsFull() {
+    RewardWriteBuffer buffer = buffer(3, Duration.ofSeconds(30));
+
+    StepVerifier.create(Flux.merge(
+        buffer.submit(new Reward("a", 1, null)),
+        buffer.submit(new Reward("b", 2, null)),
+        buffer.submit(new Reward("c", 3, null)))
+        .collectList())
+      .assertNext(saved -> {
+        assertThat(saved).extracting(Reward::getUserId).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(saved).allSatisfy(reward -> {
+          assertThat(reward.getId()).isNotNull();
+          assertThat(reward.getVersion()).isZero();
+        });
+      })
+      .verifyComplete();
+
+    assertThat(insertedBatchSizes).containsExactly(3);
+    assertThat(registry.get("rewards.create.coalescing.batch.size").summary().totalAmount()).isEqualTo(3);
+  }
+
+  @Test
+  void flushesPartialBatchAfterMaxWait() {
+    RewardWriteBuffer buffer = buffer(100, Duration.ofMillis(20));
+
+    StepVerifier.create(buffer.submit(new Reward("a", 1, null)))
+      .assertNext(saved -> assertThat(saved.getId()).isNotNull())
+      .verifyComplete();
+
+    assertThat(insertedBatchSizes).containsExactly(1);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void failsOnlyTheRewardsWhoseInsertFailed() {
+    RewardWriteBuffer buffer = buffer(3, Duration.ofSeconds(30));
+    failing.add(1);
+
+    Mono<Reward> a = buffer.submit(new Reward("a", 1, null)).cache();
+    Mono<Reward> b = buffer.submit(new Reward("b", 2, null)).cache();
+    Mono<Reward> c = buffer.submit(new Reward("c", 3, null)).cache();
+    Flux.merge(a, b, c).onErrorContinue((e, value) -> { }).subscribe();
+
+    StepVerifier.create(a).expectNextCount(1).verifyComplete();
+    StepVerifier.create(b).verifyError(DataIntegrityViolationException.class);
+    StepVerifier.create(c).expectNextCount(1).verifyComplete();
+
+    ArgumentCaptor<Collection<Reward>> inserted = ArgumentCaptor.forClass(Collection.class);
+    verify(balances).applyInserted(inserted.capture());
+    assertThat(inserted.getValue()).extracting(Reward::getUserId).containsExactly("a", "c");
+  }
+
+  @Test
+  void rejectsSubmitsBeyondTheExactCapacity() {
+    RewardWriteBuffer buffer = new RewardWriteBuffer(template, balances, registry,
+      true, 100, Duration.ofMinutes(5), 3, 1, Duration.ofSeconds(5));
+    for (int i = 0; i < 3; i++) {
+      buffer.submit(new Reward("user-" + i, i, null)).subscribe();
+    }
+
+    StepVerifier.create(buffer.submit(new Reward("d", 4, null)))
+      .verifyErrorSatisfies(e -> {
+        assertThat(e).isInstanceOf(ResponseStatusException.class).hasMessageContaining("Reward write buffer is full");
+        ResponseStatusException overloaded = (ResponseStatusException) e;
+        assertThat(overloaded.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(overloaded.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+      });
+    assertThat(registry.get("rewards.create.coalescing.rejected").counter().count()).isEqualTo(1);
+    assertThat(registry.get("rewards.create.coalescing.queue.size").gauge().value()).isEqualTo(3);
+  }
+
+  @Test
+  void acceptsConcurrentSubmitsFromManyThreads() {
+    RewardWriteBuffer buffer = buffer(50, Duration.ofMillis(5));
+
+    StepVerifier.create(Flux.range(0, 400)
+        .flatMap(i -> buffer.submit(new Reward("user-" + i, i, null)).subscribeOn(Schedulers.parallel()))
+        .count())
+      .expectNext(400L)
+      .verifyComplete();
+
+    assertThat(insertedBatchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(400);
+    assertThat(registry.get("rewards.create.coalescing.queue.size").gauge().value()).isZero();
+    assertThat(registry.get("rewards.create.coalescing.rejected").counter().count()).isZero();
+  }
+
+  @Test
+  void flushesQueuedRewardsOnShutdown() throws InterruptedException {
+    RewardWriteBuffer buffer = buffer(100, Duration.ofMinutes(5));
+    Mono<Reward> first = buffer.submit(new Reward("a", 1, null)).cache();
+    Mono<Reward> second = buffer.submit(new Reward("b", 2, null)).cache();
+    first.subscribe();
+    second.subscribe();
+
+    buffer.destroy();
+
+    StepVerifier.create(first).expectNextCount(1).verifyComplete();
+    StepVerifier.create(second).expectNextCount(1).verifyComplete();
+    StepVerifier.create(buffer.submit(new Reward("c", 3, null)))
+      .verifyErrorSatisfies(e -> assertThat(e).hasMessageContaining("Reward write buffer is closed"));
+    assertThat(insertedBatchSizes).containsExactly(2);
+  }
+
+  private RewardWriteBuffer buffer(int maxBatchSize, Duration maxWait) {
+    return new RewardWriteBuffer(template, balances, registry,
+      true, maxBatchSize, maxWait, 1_000, 1, Duration.ofSeconds(5));
+  }
+}
@@ -0,0 +1,59 @@
+package com.example.rewards.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+  private final SingleFlight<String, String> flights = new SingleFlight<>();
+
+  @Test
+  void concurrentSubscribersShareOneQuery() {
+    AtomicInteger queries = new AtomicInteger();
+    Sinks.One<String> result = Sinks.one();
+
+    Mono<String> first = flights.mono("id", key -> {
+      queries.incrementAndGet();
+      return result.asMono();
+    });
+    Mono<String> second = flights.mono("id", key -> {
+      queries.incrementAndGet();
+      return Mono.just("other");
+    });
+
+    StepVerifier.create(Flux.merge(first, second).collectList())
+      .then(() -> result.tryEmitValue("value"))
+      .assertNext(values -> assertThat(values).containsExactly("value", "value"))
+      .verifyComplete();
+    assertThat(queries).hasValue(1);
+    assertThat(flights.inFlight()).isZero();
+  }
+
+  @Test
+  void queryRunsAgainAfterPreviousOneCompleted() {
+    AtomicInteger queries = new AtomicInteger();
+
+    for (int i = 0; i < 2; i++) {
+      StepVerifier.create(flights.mono("user", key -> Mono.just("a").doOnSubscribe(s -> queries.incrementAndGet())))
+        .expectNext("a")
+        .verifyComplete();
+    }
+    assertThat(queries).hasValue(2);
+  }
+
+  @Test
+  void failedQueryIsNotReused() {
+    StepVerifier.create(flights.mono("id", key -> Mono.error(new IllegalStateException("boom"))))
+      .verifyErrorMessage("boom");
+    StepVerifier.create(flights.mono("id", key -> Mono.just("recovered")))
+      .expectNext("recovered")
+      .verifyComplete();
+  }
+}
@@ -0,0 +1,53 @@
+package com.example.rewards.service;
+
+import com.example.rewards.model.Reward;
+import com.example.rewards.model.UserBalance;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserBalanceServiceTest {
+
+  @Mock
+  private ReactiveMongoTemplate template;
+
+  @Test
+  void rebuildRemovesBalancesOfUsersWithoutRewards() {
+    when(template.findDistinct(any(Query.class), eq("userId"), eq(Reward.class), eq(String.class)))
+      .thenReturn(Flux.just("user-1"));
+    when(template.aggregate(any(Aggregation.class), eq(Reward.class), eq(UserBalance.class)))
+      .thenReturn(Flux.just(new UserBalance("user-1", 150, 2)));
+    when(template.save(any(UserBalance.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(template.findDistinct(any(Query.class), eq("_id"), eq(UserBalance.class), eq(String.class)))
+      .thenReturn(Flux.just("user-1", "user-gone"));
+    when(template.remove(any(Query.class), eq(UserBalance.class))).thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+    StepVerifier.create(new UserBalanceService(template, 500, 2).rebuild())
+      .expectNext(1L)
+      .verifyComplete();
+
+    ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+    verify(template).remove(removed.capture(), eq(UserBalance.class));
+    assertThat(removed.getValue().getQueryObject())
+      .isEqualTo(new Document("_id", new Document("$in", List.of("user-gone"))));
+  }
+}